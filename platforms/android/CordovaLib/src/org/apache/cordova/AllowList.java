@@ -20,7 +20,10 @@ package org.apache.cordova;
 
 import java.net.MalformedURLException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,39 +33,29 @@ import android.net.Uri;
 
 public class AllowList {
     private static class URLPattern {
-        public Pattern scheme;
-        public Pattern host;
+        // Lower-cased, or null for any
+        public String scheme;
+        public String host;
+        // Host came from "*.<host>" and also matches its subdomains
+        public boolean subdomains;
         public Integer port;
-        public Pattern path;
-
-        private String regexFromPattern(String pattern, boolean allowWildcards) {
-            final String toReplace = "\\.[]{}()^$?+|";
-            StringBuilder regex = new StringBuilder();
-            for (int i=0; i < pattern.length(); i++) {
-                char c = pattern.charAt(i);
-                if (c == '*' && allowWildcards) {
-                    regex.append(".");
-                } else if (toReplace.indexOf(c) > -1) {
-                    regex.append('\\');
-                }
-                regex.append(c);
-            }
-            return regex.toString();
-        }
+        // Path split at its '*' wildcards, or null for any path
+        public String[] path;
 
         public URLPattern(String scheme, String host, String port, String path) throws MalformedURLException {
             try {
                 if (scheme == null || "*".equals(scheme)) {
                     this.scheme = null;
                 } else {
-                    this.scheme = Pattern.compile(regexFromPattern(scheme, false), Pattern.CASE_INSENSITIVE);
+                    this.scheme = asciiLowerCase(scheme);
                 }
                 if ("*".equals(host)) {
                     this.host = null;
                 } else if (host.startsWith("*.")) {
-                    this.host = Pattern.compile("([a-z0-9.-]*\\.)?" + regexFromPattern(host.substring(2), false), Pattern.CASE_INSENSITIVE);
+                    this.host = asciiLowerCase(host.substring(2));
+                    this.subdomains = true;
                 } else {
-                    this.host = Pattern.compile(regexFromPattern(host, false), Pattern.CASE_INSENSITIVE);
+                    this.host = asciiLowerCase(host);
                 }
                 if (port == null || "*".equals(port)) {
                     this.port = null;
@@ -72,28 +65,149 @@ public class AllowList {
                 if (path == null || "/*".equals(path)) {
                     this.path = null;
                 } else {
-                    this.path = Pattern.compile(regexFromPattern(path, true));
+                    this.path = path.split("\\*", -1);
                 }
             } catch (NumberFormatException e) {
                 throw new MalformedURLException("Port must be a number");
             }
         }
 
-        public boolean matches(Uri uri) {
-            try {
-                return ((scheme == null || scheme.matcher(uri.getScheme()).matches()) &&
-                        (host == null || host.matcher(uri.getHost()).matches()) &&
-                        (port == null || port.equals(uri.getPort())) &&
-                        (path == null || path.matcher(uri.getPath()).matches()));
-            } catch (Exception e) {
-                LOG.d(TAG, e.toString());
+        public boolean matchesPath(String uriPath) {
+            if (path == null) {
+                return true;
+            }
+            if (uriPath == null) {
+                return false;
+            }
+            // Glob match: the first part is a prefix, the last a suffix, and the
+            // ones in between must follow each other in order.
+            int last = path.length - 1;
+            if (last == 0) {
+                return uriPath.equals(path[0]);
+            }
+            if (!uriPath.startsWith(path[0]) || uriPath.length() < path[0].length() + path[last].length()
+                    || !uriPath.endsWith(path[last])) {
                 return false;
             }
+            int from = path[0].length();
+            int to = uriPath.length() - path[last].length();
+            for (int i = 1; i < last; i++) {
+                int found = uriPath.indexOf(path[i], from);
+                if (found < 0 || found + path[i].length() > to) {
+                    return false;
+                }
+                from = found + path[i].length();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The patterns of one scheme, indexed by host. Wildcard-host patterns are
+     * kept apart, "*.<host>" patterns are found by looking up each dot suffix
+     * of the request host.
+     */
+    private static class SchemeIndex {
+        final Map<String, List<URLPattern>> exactHosts = new HashMap<String, List<URLPattern>>();
+        final Map<String, List<URLPattern>> hostSuffixes = new HashMap<String, List<URLPattern>>();
+        final List<URLPattern> anyHost = new ArrayList<URLPattern>();
+
+        void add(URLPattern p) {
+            if (p.host == null) {
+                anyHost.add(p);
+            } else {
+                Map<String, List<URLPattern>> index = p.subdomains ? hostSuffixes : exactHosts;
+                List<URLPattern> patterns = index.get(p.host);
+                if (patterns == null) {
+                    patterns = new ArrayList<URLPattern>(1);
+                    index.put(p.host, patterns);
+                }
+                patterns.add(p);
+            }
+        }
+
+        void collect(String host, int port, List<URLPattern> out) {
+            addForPort(anyHost, port, out);
+            if (host == null) {
+                return;
+            }
+            addForPort(exactHosts.get(host), port, out);
+            addForPort(hostSuffixes.get(host), port, out);
+            // "*.example.com" also matches a.b.example.com, as long as the subdomain
+            // part only holds the characters the original pattern allowed
+            for (int dot = host.indexOf('.'); dot >= 0; dot = host.indexOf('.', dot + 1)) {
+                if (!isSubdomainPrefix(host, dot)) {
+                    break;
+                }
+                addForPort(hostSuffixes.get(host.substring(dot + 1)), port, out);
+            }
+        }
+
+        private static void addForPort(List<URLPattern> patterns, int port, List<URLPattern> out) {
+            if (patterns == null) {
+                return;
+            }
+            for (int i = 0, n = patterns.size(); i < n; i++) {
+                URLPattern p = patterns.get(i);
+                if (p.port == null || p.port == port) {
+                    out.add(p);
+                }
+            }
+        }
+
+        private static boolean isSubdomainPrefix(String host, int end) {
+            for (int i = 0; i < end; i++) {
+                char c = host.charAt(i);
+                if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * What an origin's patterns say about its URLs: allowed whatever the path,
+     * or allowed only for paths matching one of the remaining patterns (possibly
+     * none, in which case the whole origin is denied).
+     */
+    private static class OriginDecision {
+        final boolean anyPath;
+        final URLPattern[] pathPatterns;
+
+        OriginDecision(boolean anyPath, URLPattern[] pathPatterns) {
+            this.anyPath = anyPath;
+            this.pathPatterns = pathPatterns;
+        }
+
+        boolean allows(String path) {
+            if (anyPath) {
+                return true;
+            }
+            for (URLPattern p : pathPatterns) {
+                if (p.matchesPath(path)) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 
+    private static final URLPattern[] NO_PATTERNS = new URLPattern[0];
+    private static final int MAX_CACHED_ORIGINS = 64;
+
     private ArrayList<URLPattern> allowList;
 
+    // Built from allowList on first lookup, dropped whenever an entry is added.
+    // Both are guarded by the decisions lock.
+    private Map<String, SchemeIndex> compiled;
+    private final LinkedHashMap<String, OriginDecision> decisions = new LinkedHashMap<String, OriginDecision>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OriginDecision> eldest) {
+            return size() > MAX_CACHED_ORIGINS;
+        }
+    };
+
     public static final String TAG = "CordovaAllowList";
 
     public AllowList() {
@@ -141,6 +255,7 @@ public class AllowList {
             } catch (Exception e) {
                 LOG.d(TAG, "Failed to add origin %s", origin);
             }
+            invalidate();
         }
     }
 
@@ -156,15 +271,88 @@ public class AllowList {
         if (allowList == null) return true;
 
         Uri parsedUri = Uri.parse(uri);
-        // Look for match in allow list
-        Iterator<URLPattern> pit = allowList.iterator();
-        while (pit.hasNext()) {
-            URLPattern p = pit.next();
-            if (p.matches(parsedUri)) {
-                return true;
+        String scheme = parsedUri.getScheme();
+        if (scheme == null) {
+            return false;
+        }
+        scheme = asciiLowerCase(scheme);
+        String host = parsedUri.getHost();
+        if (host != null) {
+            host = asciiLowerCase(host);
+        }
+        int port = parsedUri.getPort();
+
+        String origin = scheme + "://" + host + ":" + port;
+        OriginDecision decision;
+        synchronized (decisions) {
+            decision = decisions.get(origin);
+            if (decision == null) {
+                // Decided under the lock so an entry added meanwhile cannot leave a stale decision behind
+                decision = decide(scheme, host, port);
+                decisions.put(origin, decision);
+            }
+        }
+        return decision.allows(parsedUri.getPath());
+    }
+
+    private OriginDecision decide(String scheme, String host, int port) {
+        Map<String, SchemeIndex> index = compiled;
+        if (index == null) {
+            index = compile();
+        }
+        List<URLPattern> candidates = new ArrayList<URLPattern>();
+        SchemeIndex schemePatterns = index.get(scheme);
+        if (schemePatterns != null) {
+            schemePatterns.collect(host, port, candidates);
+        }
+        SchemeIndex anySchemePatterns = index.get(null);
+        if (anySchemePatterns != null) {
+            anySchemePatterns.collect(host, port, candidates);
+        }
+        for (URLPattern p : candidates) {
+            if (p.path == null) {
+                return new OriginDecision(true, NO_PATTERNS);
+            }
+        }
+        return new OriginDecision(false, candidates.toArray(NO_PATTERNS));
+    }
+
+    // Called with the decisions lock held
+    private Map<String, SchemeIndex> compile() {
+        Map<String, SchemeIndex> index = new HashMap<String, SchemeIndex>();
+        for (URLPattern p : allowList) {
+            SchemeIndex schemePatterns = index.get(p.scheme);
+            if (schemePatterns == null) {
+                schemePatterns = new SchemeIndex();
+                index.put(p.scheme, schemePatterns);
             }
+            schemePatterns.add(p);
         }
-        return false;
+        compiled = index;
+        return index;
     }
 
+    private void invalidate() {
+        synchronized (decisions) {
+            compiled = null;
+            decisions.clear();
+        }
+    }
+
+    // Patterns used to match case-insensitively in US-ASCII only, so fold just that range
+    private static String asciiLowerCase(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                char[] chars = s.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (chars[j] >= 'A' && chars[j] <= 'Z') {
+                        chars[j] += 'a' - 'A';
+                    }
+                }
+                return new String(chars);
+            }
+        }
+        return s;
+    }
 }
@@ -134,12 +134,20 @@ public class AllowListPlugin extends CordovaPlugin {
             : null; // default policy
     }
 
+    // PluginManager caches the decisions above; drop them when the lists are replaced
+    private void invalidatePolicyCache() {
+        if (this.webView != null && this.webView.getPluginManager() != null) {
+            this.webView.getPluginManager().invalidatePolicyCache();
+        }
+    }
+
     public AllowList getAllowedNavigations() {
         return this.allowedNavigations;
     }
 
     public void setAllowedNavigations(AllowList allowedNavigations) {
         this.allowedNavigations = allowedNavigations;
+        invalidatePolicyCache();
     }
 
     public AllowList getAllowedIntents() {
@@ -148,6 +156,7 @@ public class AllowListPlugin extends CordovaPlugin {
 
     public void setAllowedIntents(AllowList allowedIntents) {
         this.allowedIntents = allowedIntents;
+        invalidatePolicyCache();
     }
 
     public AllowList getAllowedRequests() {
@@ -156,5 +165,6 @@ public class AllowListPlugin extends CordovaPlugin {
 
     public void setAllowedRequests(AllowList allowedRequests) {
         this.allowedRequests = allowedRequests;
+        invalidatePolicyCache();
     }
 }
@@ -0,0 +1,209 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Size-bounded LRU cache of the bytes of bundled www assets.
+ *
+ * Assets cannot change while the app is running, so once read they are kept
+ * together with their MIME type and ETag and served from memory. The cache is
+ * shared by every WebView in the process, which lets a recreated page reuse
+ * what an earlier one loaded.
+ */
+public class AssetCache {
+    public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static final AssetCache shared = new AssetCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * A cached asset. The bytes are never modified, so one entry can back any
+     * number of concurrent responses.
+     */
+    public static final class Entry {
+        public final String mimeType;
+        public final String etag;
+        private final byte[] data;
+
+        Entry(byte[] data, String mimeType) {
+            this.data = data;
+            this.mimeType = mimeType;
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(data.length) + "\"";
+        }
+
+        public int length() {
+            return data.length;
+        }
+
+        public InputStream openStream() {
+            return new ByteArrayInputStream(data);
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(32, 0.75f, true);
+    private int maxBytes;
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long uncacheable;
+
+    public AssetCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static AssetCache getShared() {
+        return shared;
+    }
+
+    /**
+     * Changes the size bound, evicting entries if the cache is now too large.
+     * A size of 0 disables caching.
+     */
+    public synchronized void setMaxBytes(int maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        trimToSize();
+    }
+
+    /**
+     * Whether an asset of this length would be cached. A single asset may take at
+     * most a quarter of the cache, so one large file cannot flush everything else.
+     */
+    public synchronized boolean accepts(long length) {
+        return length >= 0 && length <= maxBytes / 4;
+    }
+
+    /**
+     * Returns the entry for path, or null (counted as a miss) if it is not cached.
+     */
+    public synchronized Entry get(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the asset to the end, caches it, and closes the stream.
+     *
+     * @param expectedLength The length reported for the stream, used to size the buffer.
+     * @return The new entry. It is returned even if it turns out to be too large to keep.
+     */
+    public Entry put(String path, InputStream inputStream, int expectedLength, String mimeType) throws IOException {
+        byte[] data;
+        try {
+            data = readFully(inputStream, expectedLength);
+        } finally {
+            inputStream.close();
+        }
+        Entry entry = new Entry(data, mimeType);
+        synchronized (this) {
+            if (!accepts(data.length)) {
+                uncacheable++;
+                return entry;
+            }
+            Entry previous = entries.put(path, entry);
+            if (previous != null) {
+                currentBytes -= previous.length();
+            }
+            currentBytes += data.length;
+            trimToSize();
+        }
+        return entry;
+    }
+
+    /**
+     * Records a lookup that was served without the cache because the asset is too large.
+     */
+    public synchronized void recordUncacheable() {
+        uncacheable++;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized JSONObject getStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        stats.put("uncacheable", uncacheable);
+        stats.put("entries", entries.size());
+        stats.put("bytes", currentBytes);
+        stats.put("maxBytes", maxBytes);
+        return stats;
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().length();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static byte[] readFully(InputStream inputStream, int expectedLength) throws IOException {
+        byte[] buffer = new byte[Math.max(expectedLength, 0)];
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                // Usually the reported length is exact and this is the final EOF check
+                int next = inputStream.read();
+                if (next == -1) {
+                    return buffer;
+                }
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, 8192));
+                buffer[length++] = (byte) next;
+            }
+            int read = inputStream.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                return Arrays.copyOf(buffer, length);
+            }
+            length += read;
+        }
+    }
+}
@@ -19,14 +19,24 @@
 
 package org.apache.cordova;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import android.content.Context;
+import android.content.pm.PackageManager;
 
 public class ConfigXmlParser {
     private static String TAG = "ConfigXmlParser";
@@ -36,6 +46,10 @@ public class ConfigXmlParser {
     private static String DEFAULT_HOSTNAME = "localhost";
     private static final String DEFAULT_CONTENT_SRC = "index.html";
 
+    // Parsed config.xml, kept between activity launches. See parse(Context).
+    private static final int SNAPSHOT_MAGIC = 0x43444346;
+    private static final int SNAPSHOT_VERSION = 1;
+
     private String launchUrl;
     private String contentSrc;
     private CordovaPreferences prefs = new CordovaPreferences();
@@ -57,7 +71,32 @@ public class ConfigXmlParser {
         return launchUrl;
     }
 
+    /**
+     * Parses res/xml/config.xml, or restores the result of an earlier parse.
+     *
+     * <p>The result is stored as a snapshot keyed by the APK's lastUpdateTime, in
+     * memory and in the code cache directory, so later activity launches skip the
+     * XML. Any mismatch or read error falls back to parsing. Subclasses always
+     * parse, because they handle tags of their own.</p>
+     */
     public void parse(Context action) {
+        long key = 0;
+        boolean useSnapshot = getClass() == ConfigXmlParser.class;
+        if (useSnapshot) {
+            key = SnapshotStore.getKey(action);
+            if (key != 0 && SnapshotStore.restore(this, action, key)) {
+                return;
+            }
+        }
+
+        parseXml(action);
+
+        if (useSnapshot && key != 0) {
+            SnapshotStore.save(this, action, key);
+        }
+    }
+
+    private void parseXml(Context action) {
         // First checking the class namespace for config.xml
         int id = action.getResources().getIdentifier("config", "xml", action.getClass().getPackage().getName());
         if (id == 0) {
@@ -170,6 +209,71 @@ public class ConfigXmlParser {
         }
     }
 
+    /**
+     * Writes what has been parsed (preferences, plugin entries and content src)
+     * in a compact binary form that readSnapshot() restores.
+     *
+     * @param key   Identifies the config.xml this was parsed from
+     */
+    public void writeSnapshot(DataOutputStream out, long key) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(key);
+        writeNullableString(out, contentSrc);
+        Map<String, String> all = prefs.getAll();
+        out.writeInt(all.size());
+        for (Map.Entry<String, String> pref : all.entrySet()) {
+            out.writeUTF(pref.getKey());
+            writeNullableString(out, pref.getValue());
+        }
+        out.writeInt(pluginEntries.size());
+        for (PluginEntry entry : pluginEntries) {
+            writeNullableString(out, entry.service);
+            writeNullableString(out, entry.pluginClass);
+            out.writeBoolean(entry.onload);
+        }
+        out.flush();
+    }
+
+    /**
+     * Restores a snapshot written by writeSnapshot().
+     *
+     * @return false, with nothing restored, if the snapshot is for another key or
+     *         was written by another version of this class
+     */
+    public boolean readSnapshot(DataInputStream in, long key) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION || in.readLong() != key) {
+            return false;
+        }
+        String src = readNullableString(in);
+        CordovaPreferences restoredPrefs = new CordovaPreferences();
+        for (int i = in.readInt(); i > 0; i--) {
+            restoredPrefs.set(in.readUTF(), readNullableString(in));
+        }
+        int count = in.readInt();
+        ArrayList<PluginEntry> entries = new ArrayList<PluginEntry>(Math.max(count, 20));
+        for (int i = 0; i < count; i++) {
+            String service = readNullableString(in);
+            String pluginClass = readNullableString(in);
+            entries.add(new PluginEntry(service, pluginClass, in.readBoolean()));
+        }
+        contentSrc = src;
+        prefs = restoredPrefs;
+        pluginEntries = entries;
+        return true;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     private String getLaunchUrlPrefix() {
         if (prefs.getBoolean("AndroidInsecureFileModeEnabled", false)) {
             return "file:///android_asset/www/";
@@ -206,4 +310,109 @@ public class ConfigXmlParser {
             launchUrl = launchUrlPrefix + src;
         }
     }
+
+    /**
+     * Keeps the last snapshot in memory and in the code cache directory. Separate
+     * from the parser so that only parse(Context) needs the Android classes it uses.
+     */
+    private static final class SnapshotStore {
+        private static final String SNAPSHOT_FILE = "cordova-config.snapshot";
+
+        private static final Object snapshotLock = new Object();
+        private static byte[] snapshot;
+        private static long snapshotKey;
+
+        static long getKey(Context context) {
+            // An update restarts the process, so the APK cannot change under a running one
+            synchronized (snapshotLock) {
+                if (snapshot != null) {
+                    return snapshotKey;
+                }
+            }
+            try {
+                return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                return 0;
+            }
+        }
+
+        static boolean restore(ConfigXmlParser parser, Context context, long key) {
+            byte[] data;
+            synchronized (snapshotLock) {
+                data = snapshotKey == key ? snapshot : null;
+            }
+            try {
+                if (data != null) {
+                    return parser.readSnapshot(new DataInputStream(new ByteArrayInputStream(data)), key);
+                }
+                File file = new File(context.getCodeCacheDir(), SNAPSHOT_FILE);
+                data = readFile(file);
+                if (data == null || !parser.readSnapshot(new DataInputStream(new ByteArrayInputStream(data)), key)) {
+                    return false;
+                }
+                synchronized (snapshotLock) {
+                    snapshot = data;
+                    snapshotKey = key;
+                }
+                return true;
+            } catch (IOException e) {
+                LOG.w(TAG, "Ignoring unreadable config snapshot", e);
+                return false;
+            }
+        }
+
+        static void save(ConfigXmlParser parser, Context context, long key) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+            try {
+                parser.writeSnapshot(new DataOutputStream(buffer), key);
+            } catch (IOException e) {
+                LOG.w(TAG, "Could not snapshot config.xml", e);
+                return;
+            }
+            byte[] data = buffer.toByteArray();
+            synchronized (snapshotLock) {
+                snapshot = data;
+                snapshotKey = key;
+            }
+            File file = new File(context.getCodeCacheDir(), SNAPSHOT_FILE);
+            File tmp = new File(file.getPath() + ".tmp");
+            try {
+                FileOutputStream out = new FileOutputStream(tmp);
+                try {
+                    out.write(data);
+                } finally {
+                    out.close();
+                }
+                if (!tmp.renameTo(file)) {
+                    tmp.delete();
+                }
+            } catch (IOException e) {
+                LOG.w(TAG, "Could not write config snapshot", e);
+                tmp.delete();
+            }
+        }
+
+        private static byte[] readFile(File file) throws IOException {
+            FileInputStream in;
+            try {
+                in = new FileInputStream(file);
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+            try {
+                byte[] data = new byte[(int) file.length()];
+                int length = 0;
+                while (length < data.length) {
+                    int read = in.read(data, length, data.length - length);
+                    if (read < 0) {
+                        return null;
+                    }
+                    length += read;
+                }
+                return data;
+            } finally {
+                in.close();
+            }
+        }
+    }
 }
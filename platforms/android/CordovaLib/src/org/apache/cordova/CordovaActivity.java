@@ -105,11 +105,14 @@ public class CordovaActivity extends AppCompatActivity {
      */
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        int span = StartupTimeline.begin("CordovaActivity.onCreate");
         // Handle the splash screen transition.
         splashScreen = SplashScreen.installSplashScreen(this);
 
         // need to activate preferences before super.onCreate to avoid "requestFeature() must be called before adding content" exception
+        int configSpan = StartupTimeline.begin("ConfigXmlParser.parse");
         loadConfig();
+        StartupTimeline.end(configSpan);
 
         String logLevel = preferences.getString("loglevel", "ERROR");
         LOG.setLogLevel(logLevel);
@@ -146,9 +149,11 @@ public class CordovaActivity extends AppCompatActivity {
         if (savedInstanceState != null) {
             cordovaInterface.restoreInstanceState(savedInstanceState);
         }
+        StartupTimeline.end(span);
     }
 
     protected void init() {
+        int span = StartupTimeline.begin("CordovaActivity.init");
         appView = makeWebView();
         createViews();
         if (!appView.isInitialized()) {
@@ -164,6 +169,7 @@ public class CordovaActivity extends AppCompatActivity {
         if ("media".equals(volumePref.toLowerCase(Locale.ENGLISH))) {
             setVolumeControlStream(AudioManager.STREAM_MUSIC);
         }
+        StartupTimeline.end(span);
     }
 
     @SuppressWarnings("deprecation")
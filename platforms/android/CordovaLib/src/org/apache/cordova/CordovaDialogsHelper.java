@@ -18,21 +18,40 @@
 */
 package org.apache.cordova;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.Context;
+import android.content.ContextWrapper;
 import android.content.DialogInterface;
+import android.os.IBinder;
 import android.view.KeyEvent;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
 import android.widget.EditText;
 
 /**
  * Helper class for WebViews to implement prompt(), alert(), confirm() dialogs.
  */
 public class CordovaDialogsHelper {
+    private static final String LOG_TAG = "CordovaDialogsHelper";
+
     private final Context context;
+    private final View anchor;
     private AlertDialog lastHandledDialog;
 
     public CordovaDialogsHelper(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * @param anchor View whose window the dialogs attach to when context is not an
+     *               Activity (a WebView hosted by a Service, such as an input method).
+     *               Such a context has no window token of its own.
+     */
+    public CordovaDialogsHelper(Context context, View anchor) {
         this.context = context;
+        this.anchor = anchor;
     }
 
     public void showAlert(String message, final Result result) {
@@ -68,7 +87,7 @@ public class CordovaDialogsHelper {
                     return true;
             }
         });
-        lastHandledDialog = dlg.show();
+        lastHandledDialog = show(dlg, result);
     }
 
     public void showConfirm(String message, final Result result) {
@@ -110,7 +129,7 @@ public class CordovaDialogsHelper {
                     return true;
             }
         });
-        lastHandledDialog = dlg.show();
+        lastHandledDialog = show(dlg, result);
     }
 
     /**
@@ -146,7 +165,42 @@ public class CordovaDialogsHelper {
                         result.gotResult(false, null);
                     }
                 });
-        lastHandledDialog = dlg.show();
+        lastHandledDialog = show(dlg, result);
+    }
+
+    /**
+     * Shows the dialog, attached to the anchor's window when there is no Activity.
+     * Without either, showing would throw BadTokenException, so the dialog is
+     * answered as cancelled instead.
+     */
+    private AlertDialog show(AlertDialog.Builder dlg, Result result) {
+        if (isActivityContext(context)) {
+            return dlg.show();
+        }
+        IBinder token = anchor != null ? anchor.getWindowToken() : null;
+        if (token == null) {
+            LOG.w(LOG_TAG, "No window to attach the dialog to, cancelling it");
+            result.gotResult(false, null);
+            return null;
+        }
+        AlertDialog dialog = dlg.create();
+        Window window = dialog.getWindow();
+        WindowManager.LayoutParams params = window.getAttributes();
+        params.token = token;
+        params.type = WindowManager.LayoutParams.TYPE_APPLICATION_ATTACHED_DIALOG;
+        window.setAttributes(params);
+        dialog.show();
+        return dialog;
+    }
+
+    private static boolean isActivityContext(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) {
+                return true;
+            }
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return false;
     }
 
     public void destroyLastDialog(){
@@ -40,7 +40,9 @@ import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -94,6 +96,51 @@ public class CordovaResourceApi {
 
     private static final String[] LOCAL_FILE_PROJECTION = { "_data" };
 
+    // Extensions that are looked up constantly (script libraries, web assets), answered
+    // without MimeTypeMap.
+    private static final HashMap<String, String> COMMON_MIME_TYPES = new HashMap<String, String>();
+    static {
+        // Missing from MimeTypeMap :(.
+        COMMON_MIME_TYPES.put("js", "text/javascript");
+        COMMON_MIME_TYPES.put("3ga", "audio/3gpp");
+
+        COMMON_MIME_TYPES.put("html", "text/html");
+        COMMON_MIME_TYPES.put("htm", "text/html");
+        COMMON_MIME_TYPES.put("css", "text/css");
+        COMMON_MIME_TYPES.put("txt", "text/plain");
+        COMMON_MIME_TYPES.put("json", "application/json");
+        COMMON_MIME_TYPES.put("png", "image/png");
+        COMMON_MIME_TYPES.put("jpg", "image/jpeg");
+        COMMON_MIME_TYPES.put("jpeg", "image/jpeg");
+        COMMON_MIME_TYPES.put("gif", "image/gif");
+        COMMON_MIME_TYPES.put("webp", "image/webp");
+        COMMON_MIME_TYPES.put("svg", "image/svg+xml");
+        COMMON_MIME_TYPES.put("pdf", "application/pdf");
+        COMMON_MIME_TYPES.put("zip", "application/zip");
+        COMMON_MIME_TYPES.put("mp3", "audio/mpeg");
+        COMMON_MIME_TYPES.put("mp4", "video/mp4");
+    }
+
+    // Other extensions, as found by MimeTypeMap. Dropped when full; there are few distinct ones.
+    private static final int MAX_CACHED_EXTENSIONS = 256;
+    private static final String NO_MIME_TYPE = "";
+    private static final ConcurrentHashMap<String, String> extensionMimeTypes = new ConcurrentHashMap<String, String>();
+
+    // Content-Type of remote resources, so repeated lookups do not each send a HEAD request
+    private static final long REMOTE_MIME_TYPE_TTL_MS = 5 * 60 * 1000;
+    private static final int MAX_CACHED_REMOTE_MIME_TYPES = 64;
+    private static final ConcurrentHashMap<String, RemoteMimeType> remoteMimeTypes = new ConcurrentHashMap<String, RemoteMimeType>();
+
+    private static final class RemoteMimeType {
+        final String mimeType;
+        final long expiresAt;
+
+        RemoteMimeType(String mimeType, long expiresAt) {
+            this.mimeType = mimeType;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     public static Thread jsThread;
 
     private final AssetManager assetManager;
@@ -199,38 +246,73 @@ public class CordovaResourceApi {
             }
             case URI_TYPE_HTTP:
             case URI_TYPE_HTTPS: {
-                try {
-                    HttpURLConnection conn = (HttpURLConnection)new URL(uri.toString()).openConnection();
-                    conn.setDoInput(false);
-                    conn.setRequestMethod("HEAD");
-                    String mimeType = conn.getHeaderField("Content-Type");
-                    if (mimeType != null) {
-                        mimeType = mimeType.split(";")[0];
-                    }
-                    return mimeType;
-                } catch (IOException e) {
-                }
+                return getRemoteMimeType(uri.toString());
             }
         }
 
         return null;
     }
 
+    private static String getRemoteMimeType(String url) {
+        long now = System.currentTimeMillis();
+        RemoteMimeType cached = remoteMimeTypes.get(url);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.mimeType;
+        }
+        try {
+            HttpURLConnection conn = (HttpURLConnection)new URL(url).openConnection();
+            String mimeType;
+            try {
+                conn.setDoInput(false);
+                conn.setRequestMethod("HEAD");
+                mimeType = conn.getHeaderField("Content-Type");
+            } finally {
+                conn.disconnect();
+            }
+            if (mimeType != null) {
+                mimeType = mimeType.split(";")[0];
+            }
+            // Failed requests are not cached, the next lookup tries again
+            if (remoteMimeTypes.size() >= MAX_CACHED_REMOTE_MIME_TYPES) {
+                remoteMimeTypes.clear();
+            }
+            remoteMimeTypes.put(url, new RemoteMimeType(mimeType, now + REMOTE_MIME_TYPE_TTL_MS));
+            return mimeType;
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-    //This already exists
-    private String getMimeTypeFromPath(String path) {
-        String extension = path;
-        int lastDot = extension.lastIndexOf('.');
-        if (lastDot != -1) {
-            extension = extension.substring(lastDot + 1);
+    /**
+     * Returns the MIME type for the extension of a path, or null if it is not known.
+     * Unlike getMimeType(Uri), the path may be relative, e.g. an asset path.
+     */
+    public String getMimeTypeFromPath(String path) {
+        // Only a dot in the last segment starts an extension; a name without one
+        // has no type and is not cached, so directories of such files can not
+        // flood the cache
+        int lastDot = path.lastIndexOf('.');
+        if (lastDot == -1 || lastDot < path.lastIndexOf('/') || lastDot == path.length() - 1) {
+            return null;
+        }
+        String extension = path.substring(lastDot + 1);
+        String mimeType = extensionMimeTypes.get(extension);
+        if (mimeType == null) {
+            mimeType = lookUpMimeType(extension);
+            if (extensionMimeTypes.size() >= MAX_CACHED_EXTENSIONS) {
+                extensionMimeTypes.clear();
+            }
+            extensionMimeTypes.put(extension, mimeType != null ? mimeType : NO_MIME_TYPE);
         }
+        return mimeType == NO_MIME_TYPE ? null : mimeType;
+    }
+
+    private static String lookUpMimeType(String extension) {
         // Convert the URI string to lower case to ensure compatibility with MimeTypeMap (see CB-2185).
-        extension = extension.toLowerCase(Locale.getDefault());
-        if (extension.equals("3ga")) {
-            return "audio/3gpp";
-        } else if (extension.equals("js")) {
-            // Missing from the map :(.
-            return "text/javascript";
+        extension = extension.toLowerCase(Locale.ENGLISH);
+        String mimeType = COMMON_MIME_TYPES.get(extension);
+        if (mimeType != null) {
+            return mimeType;
         }
         return MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
     }
@@ -373,6 +455,8 @@ public class CordovaResourceApi {
         assertBackgroundThread();
         try {
             InputStream inputStream = input.inputStream;
+            // Also true for uncompressed assets and content:// files, whose AssetFileDescriptor
+            // streams are FileInputStreams over a region of a larger file.
             if (inputStream instanceof FileInputStream && outputStream instanceof FileOutputStream) {
                 FileChannel inChannel = ((FileInputStream)input.inputStream).getChannel();
                 FileChannel outChannel = ((FileOutputStream)outputStream).getChannel();
@@ -381,10 +465,10 @@ public class CordovaResourceApi {
                 if (input.assetFd != null) {
                     offset = input.assetFd.getStartOffset();
                 }
-                // transferFrom()'s 2nd arg is a relative position. Need to set the absolute
-                // position first.
-                inChannel.position(offset);
-                outChannel.transferFrom(inChannel, 0, length);
+                if (length < 0) {
+                    length = inChannel.size() - offset;
+                }
+                transferFully(inChannel, offset, length, outChannel);
             } else {
                 final int BUFFER_SIZE = 8192;
                 byte[] buffer = new byte[BUFFER_SIZE];
@@ -406,6 +490,26 @@ public class CordovaResourceApi {
         }
     }
 
+    /**
+     * Copies count bytes starting at the absolute position of in to the current position
+     * of out, letting the kernel move the data (sendfile) instead of copying it through
+     * the Java heap. transferTo() may copy less than asked for, so this loops until done.
+     *
+     * @return The number of bytes copied, less than count only if in ended early
+     */
+    public static long transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long copied = 0;
+        while (copied < count) {
+            long n = in.transferTo(position + copied, count - copied, out);
+            if (n <= 0) {
+                // End of in; FileChannel targets always block until something is written
+                break;
+            }
+            copied += n;
+        }
+        return copied;
+    }
+
     public void copyResource(Uri sourceUri, OutputStream outputStream) throws IOException {
         copyResource(openForRead(sourceUri), outputStream);
     }
@@ -64,6 +64,10 @@ public class CordovaWebViewImpl implements CordovaWebView {
     private NativeToJsMessageQueue nativeToJsMessageQueue;
     private EngineClient engineClient = new EngineClient();
     private boolean hasPausedEver;
+    // Whether handlePause() pauses the native->JS message queue; see setHoldMessagesWhilePaused()
+    private boolean holdMessagesWhilePaused;
+    // Whether handlePause() paused the native->JS message queue, so handleResume() undoes it once
+    private boolean messagesPaused;
 
     // The URL passed to loadUrl(), not necessarily the URL of the current page.
     String loadedUrl;
@@ -100,11 +104,12 @@ public class CordovaWebViewImpl implements CordovaWebView {
         if (this.cordova != null) {
             throw new IllegalStateException();
         }
+        int span = StartupTimeline.begin("CordovaWebViewImpl.init");
         this.cordova = cordova;
         this.preferences = preferences;
         pluginManager = new PluginManager(this, this.cordova, pluginEntries);
         resourceApi = new CordovaResourceApi(engine.getView().getContext(), pluginManager);
-        nativeToJsMessageQueue = new NativeToJsMessageQueue();
+        nativeToJsMessageQueue = new NativeToJsMessageQueue(preferences.getBoolean("LockFreeMessageQueue", false));
         nativeToJsMessageQueue.addBridgeMode(new NativeToJsMessageQueue.NoOpBridgeMode());
         nativeToJsMessageQueue.addBridgeMode(new NativeToJsMessageQueue.LoadUrlBridgeMode(engine, cordova));
 
@@ -117,6 +122,7 @@ public class CordovaWebViewImpl implements CordovaWebView {
 
         pluginManager.addService(CoreAndroid.PLUGIN_NAME, "org.apache.cordova.CoreAndroid", true);
         pluginManager.init();
+        StartupTimeline.end(span);
     }
 
     @Override
@@ -127,6 +133,7 @@ public class CordovaWebViewImpl implements CordovaWebView {
     @Override
     public void loadUrlIntoView(final String url, boolean recreatePlugins) {
         LOG.d(TAG, ">>> loadUrl(" + url + ")");
+        StartupTimeline.mark("loadUrlIntoView");
         if (url.equals("about:blank") || url.startsWith("javascript:")) {
             engine.loadUrl(url, false);
             return;
@@ -179,29 +186,26 @@ public class CordovaWebViewImpl implements CordovaWebView {
                     e.printStackTrace();
                 }
 
-                // If timeout, then stop loading and handle error (if activity still exists)
-                if (loadUrlTimeout == currentLoadUrlTimeout && cordova.getActivity() != null) {
-                    cordova.getActivity().runOnUiThread(loadError);
-                } else if (cordova.getActivity() == null) {
-                    LOG.d(TAG, "Cordova activity does not exist.");
+                // If timeout, then stop loading and handle error
+                if (loadUrlTimeout == currentLoadUrlTimeout) {
+                    MainThread.run(cordova, loadError);
                 }
             }
         };
 
-        if (cordova.getActivity() != null) {
-            final boolean _recreatePlugins = recreatePlugins;
-            cordova.getActivity().runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    if (loadUrlTimeoutValue > 0) {
-                        cordova.getThreadPool().execute(timeoutCheck);
-                    }
-                    engine.loadUrl(url, _recreatePlugins);
+        // Without an Activity (a WebView hosted by a Service) this runs on the main looper
+        final boolean _recreatePlugins = recreatePlugins;
+        MainThread.run(cordova, new Runnable() {
+            @Override
+            public void run() {
+                if (loadUrlTimeoutValue > 0) {
+                    cordova.getThreadPool().execute(timeoutCheck);
                 }
-            });
-        } else {
-            LOG.d(TAG, "Cordova activity does not exist.");
-        }
+                int span = StartupTimeline.begin("engine.loadUrl");
+                engine.loadUrl(url, _recreatePlugins);
+                StartupTimeline.end(span);
+            }
+        });
     }
 
 
@@ -476,6 +480,16 @@ public class CordovaWebViewImpl implements CordovaWebView {
             this.pluginManager.onNewIntent(intent);
         }
     }
+    /**
+     * When enabled, handlePause(false) also holds plugin results in the native->JS
+     * message queue until handleResume(). Off by default: an Activity host keeps
+     * delivering them to its paused page. Hosts that detach and pause their WebView
+     * while the app keeps running, such as the keyboard service, enable it.
+     */
+    public void setHoldMessagesWhilePaused(boolean value) {
+        holdMessagesWhilePaused = value;
+    }
+
     @Override
     public void handlePause(boolean keepRunning) {
         if (!isInitialized()) {
@@ -489,6 +503,11 @@ public class CordovaWebViewImpl implements CordovaWebView {
         if (!keepRunning) {
             // Pause JavaScript timers. This affects all WebViews within the app!
             engine.setPaused(true);
+            // Hold plugin results until resumed rather than evaluating them in a paused page
+            if (holdMessagesWhilePaused && !messagesPaused) {
+                messagesPaused = true;
+                nativeToJsMessageQueue.setPaused(true);
+            }
         }
     }
     @Override
@@ -499,6 +518,10 @@ public class CordovaWebViewImpl implements CordovaWebView {
 
         // Resume JavaScript timers. This affects all WebViews within the app!
         engine.setPaused(false);
+        if (messagesPaused) {
+            messagesPaused = false;
+            nativeToJsMessageQueue.setPaused(false);
+        }
         this.pluginManager.onResume(keepRunning);
 
         // In order to match the behavior of the other platforms, we only send onResume after an
@@ -586,16 +609,12 @@ public class CordovaWebViewImpl implements CordovaWebView {
                     public void run() {
                         try {
                             Thread.sleep(2000);
-                            if (cordova.getActivity() != null) {
-                                cordova.getActivity().runOnUiThread(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        pluginManager.postMessage("spinner", "stop");
-                                    }
-                                });
-                            } else {
-                                LOG.d(TAG, "Cordova activity does not exist.");
-                            }
+                            MainThread.run(cordova, new Runnable() {
+                                @Override
+                                public void run() {
+                                    pluginManager.postMessage("spinner", "stop");
+                                }
+                            });
                         } catch (InterruptedException e) {
                         }
                     }
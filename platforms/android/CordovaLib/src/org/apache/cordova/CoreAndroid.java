@@ -87,7 +87,7 @@ public class CoreAndroid extends CordovaPlugin {
                 // This gets called from JavaScript onCordovaReady to show the WebView.
                 // I recommend we change the name of the Message as spinner/stop is not
                 // indicative of what this actually does (shows the WebView).
-                cordova.getActivity().runOnUiThread(new Runnable() {
+                MainThread.run(cordova, new Runnable() {
                     @Override
                     public void run() {
                         webView.getPluginManager().postMessage("spinner", "stop");
@@ -114,6 +114,25 @@ public class CoreAndroid extends CordovaPlugin {
             }
             else if (action.equals("exitApp")) {
                 this.exitApp();
+            }
+            else if (action.equals("getAssetCacheStats")) {
+                callbackContext.success(AssetCache.getShared().getStats());
+                return true;
+            }
+            else if (action.equals("getPolicyStats")) {
+                callbackContext.success(webView.getPluginManager().getPolicyStats());
+                return true;
+            }
+            else if (action.equals("getStartupStats")) {
+                callbackContext.success(webView.getPluginManager().getStartupStats());
+                return true;
+            }
+            else if (action.equals("markStartupEvent")) {
+                StartupTimeline.mark(args.getString(0));
+            }
+            else if (action.equals("getStartupTrace")) {
+                callbackContext.success(StartupTimeline.toChromeTrace());
+                return true;
             }
 			else if (action.equals("messageChannel")) {
                 synchronized(messageChannelLock) {
@@ -146,7 +165,7 @@ public class CoreAndroid extends CordovaPlugin {
      * Clear the resource cache.
      */
     public void clearCache() {
-        cordova.getActivity().runOnUiThread(new Runnable() {
+        MainThread.run(cordova, new Runnable() {
             @Override
             public void run() {
                 webView.clearCache();
@@ -218,7 +237,7 @@ public class CoreAndroid extends CordovaPlugin {
      * Clear page history for the app.
      */
     public void clearHistory() {
-        cordova.getActivity().runOnUiThread(new Runnable() {
+        MainThread.run(cordova, new Runnable() {
             @Override
             public void run() {
                 webView.clearHistory();
@@ -231,7 +250,7 @@ public class CoreAndroid extends CordovaPlugin {
      * This is the same as pressing the backbutton on Android device.
      */
     public void backHistory() {
-        cordova.getActivity().runOnUiThread(new Runnable() {
+        MainThread.run(cordova, new Runnable() {
             @Override
             public void run() {
                 webView.backHistory();
@@ -0,0 +1,58 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs code on the UI thread of a CordovaInterface.
+ *
+ * <p>A WebView hosted outside of an Activity (for example by a Service) has a
+ * CordovaInterface whose getActivity() returns null, so code that used
+ * cordova.getActivity().runOnUiThread() goes through here instead.</p>
+ */
+public final class MainThread {
+    private static Handler handler;
+
+    private MainThread() {
+    }
+
+    /**
+     * Like Activity.runOnUiThread(): runs r now if called on the UI thread, and posts it otherwise.
+     */
+    public static void run(CordovaInterface cordova, Runnable r) {
+        Activity activity = cordova.getActivity();
+        if (activity != null) {
+            activity.runOnUiThread(r);
+        } else if (Looper.myLooper() == Looper.getMainLooper()) {
+            r.run();
+        } else {
+            getHandler().post(r);
+        }
+    }
+
+    private static synchronized Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+}
@@ -19,7 +19,9 @@
 package org.apache.cordova;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds the list of messages to be sent to the WebView.
@@ -42,16 +44,67 @@ public class NativeToJsMessageQueue {
     // It may be useful to split and reassemble response messages someday.
     private static int COMBINED_RESPONSE_CUTOFF = 16 * 1024 * 1024;
 
+    // Initial and maximum number of pending messages held by the ring buffer.
+    // Once the maximum is reached, progress results (keepCallback) are dropped to
+    // make room, and counted. Final results are always kept: each one is the only
+    // answer to an exec() call, and there are no more of them than calls in flight.
+    private static final int INITIAL_QUEUE_CAPACITY = 16;
+    private static final int MAX_QUEUE_CAPACITY = 16 * 1024;
+
+    // The encode buffer is reused between flushes unless a flush made it larger than this.
+    private static final int MAX_RETAINED_ENCODE_BUFFER = 256 * 1024;
+
+    /**
+     * When true, producers append to a lock-free inbox instead of taking the queue
+     * monitor; the inbox is drained into the ring buffer by the consumer.
+     * Enabled by the "LockFreeMessageQueue" preference.
+     */
+    private final boolean lockFreeEnqueue;
+    private final ConcurrentLinkedQueue<JsMessage> inbox;
+
+    /**
+     * Messages added to the inbox and not yet drained. Producers drop progress results
+     * once it reaches MAX_QUEUE_CAPACITY, so the inbox is bounded like the ring buffer,
+     * and the consumer drains only what was counted when it started.
+     */
+    private final AtomicInteger inboxSize;
+    private final AtomicLong inboxDroppedMessages;
+
+    /**
+     * Incremented on reset() so that messages enqueued concurrently with a page
+     * transition are discarded instead of leaking into the next page.
+     */
+    private volatile int generation;
+
+    /**
+     * Number of setPaused(true) calls not yet matched by setPaused(false). While it is
+     * non-zero, the active listener is not fired upon enqueue; when it drops to zero,
+     * the active listener will be fired if the queue is non-empty. The bridge pauses
+     * around every exec() while a WebView host that holds messages while paused (see
+     * CordovaWebViewImpl.setHoldMessagesWhilePaused) keeps the queue paused for longer.
+     */
+    private final AtomicInteger pauseCount = new AtomicInteger();
+
     /**
-     * When true, the active listener is not fired upon enqueue. When set to false,
-     * the active listener will be fired if the queue is non-empty.
+     * Ring buffer of JavaScript statements to be sent to JavaScript.
+     * queueHead is the index of the oldest message, queueSize the number of pending messages.
      */
-    private boolean paused;
+    private JsMessage[] queue = new JsMessage[INITIAL_QUEUE_CAPACITY];
+    private int queueHead;
+    // Written under the monitor; volatile so that setPaused() can see pending messages without taking it
+    private volatile int queueSize;
 
     /**
-     * The list of JavaScript statements to be sent to JavaScript.
+     * Backpressure stats: the largest number of messages ever pending at once,
+     * and the number of progress results and statements dropped because the queue was full.
      */
-    private final LinkedList<JsMessage> queue = new LinkedList<JsMessage>();
+    private int highWaterMark;
+    private long droppedMessages;
+
+    /**
+     * Reused by popAndEncode() / popAndEncodeAsJs() to avoid reallocating on every flush.
+     */
+    private StringBuilder encodeBuffer = new StringBuilder(1024);
 
     /**
      * The array of listeners that can be used to send messages to JS.
@@ -63,7 +116,18 @@ public class NativeToJsMessageQueue {
      * When disabled, all callbacks are dropped since they are assumed to be
      * relevant to the previous page.
      */
-    private BridgeMode activeBridgeMode;
+    private volatile BridgeMode activeBridgeMode;
+
+    public NativeToJsMessageQueue() {
+        this(false);
+    }
+
+    public NativeToJsMessageQueue(boolean lockFreeEnqueue) {
+        this.lockFreeEnqueue = lockFreeEnqueue;
+        this.inbox = lockFreeEnqueue ? new ConcurrentLinkedQueue<JsMessage>() : null;
+        this.inboxSize = lockFreeEnqueue ? new AtomicInteger() : null;
+        this.inboxDroppedMessages = lockFreeEnqueue ? new AtomicLong() : null;
+    }
 
     public void addBridgeMode(BridgeMode bridgeMode) {
         bridgeModes.add(bridgeMode);
@@ -74,7 +138,22 @@ public class NativeToJsMessageQueue {
     }
 
     public boolean isEmpty() {
-        return queue.isEmpty();
+        return queueSize == 0 && (inbox == null || inbox.isEmpty());
+    }
+
+    /**
+     * @return the largest number of messages that were pending at the same time.
+     */
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return the number of messages dropped because the queue was at capacity. Only
+     *         progress results and JavaScript statements are ever dropped.
+     */
+    public synchronized long getDroppedMessageCount() {
+        return droppedMessages + (inboxDroppedMessages != null ? inboxDroppedMessages.get() : 0);
     }
 
     /**
@@ -91,7 +170,7 @@ public class NativeToJsMessageQueue {
                     activeBridgeMode = newMode;
                     if (newMode != null) {
                         newMode.reset();
-                        if (!paused && !queue.isEmpty()) {
+                        if (!isPaused() && !isEmpty()) {
                             newMode.onNativeToJsMessageAvailable(this);
                         }
                     }
@@ -105,22 +184,154 @@ public class NativeToJsMessageQueue {
      */
     public void reset() {
         synchronized (this) {
-            queue.clear();
+            clearQueue();
+            if (inbox != null) {
+                while (inbox.poll() != null) {
+                    inboxSize.decrementAndGet();
+                }
+            }
             setBridgeMode(-1);
+            generation++;
+        }
+    }
+
+    /**
+     * Moves messages from the lock-free inbox into the ring buffer.
+     * Must be called while holding the queue monitor.
+     */
+    private void drainInbox() {
+        if (inbox == null) {
+            return;
         }
+        int currentGeneration = generation;
+        // Bounded by the count at entry: producers that keep adding cannot hold the consumer here
+        int drained = 0;
+        JsMessage message;
+        for (int n = inboxSize.get(); drained < n && (message = inbox.poll()) != null; drained++) {
+            if (message.generation == currentGeneration) {
+                addMessage(message);
+            }
+        }
+        inboxSize.addAndGet(-drained);
     }
 
-    private int calculatePackedMessageLength(JsMessage message) {
-        int messageLen = message.calculateEncodedLength();
-        String messageLenStr = String.valueOf(messageLen);
-        return messageLenStr.length() + messageLen + 1;
+    private void clearQueue() {
+        for (int i = 0; i < queueSize; ++i) {
+            queue[(queueHead + i) & (queue.length - 1)] = null;
+        }
+        queueHead = 0;
+        queueSize = 0;
     }
 
-    private void packMessage(JsMessage message, StringBuilder sb) {
-        int len = message.calculateEncodedLength();
-        sb.append(len)
-          .append(' ');
-        message.encodeAsMessage(sb);
+    private JsMessage peekMessage(int index) {
+        return queue[(queueHead + index) & (queue.length - 1)];
+    }
+
+    private JsMessage removeFirstMessage() {
+        JsMessage message = queue[queueHead];
+        queue[queueHead] = null;
+        queueHead = (queueHead + 1) & (queue.length - 1);
+        queueSize--;
+        return message;
+    }
+
+    private void removeMessage(int index) {
+        int mask = queue.length - 1;
+        for (int i = index; i < queueSize - 1; ++i) {
+            queue[(queueHead + i) & mask] = queue[(queueHead + i + 1) & mask];
+        }
+        queue[(queueHead + queueSize - 1) & mask] = null;
+        queueSize--;
+    }
+
+    /**
+     * Appends to the ring buffer, doubling it when full. At MAX_QUEUE_CAPACITY it
+     * makes room by dropping a progress result, and only grows further for final
+     * results.
+     * @return false if the message was dropped.
+     */
+    private boolean addMessage(JsMessage message) {
+        if (queueSize == queue.length) {
+            if (queue.length >= MAX_QUEUE_CAPACITY && !makeRoomFor(message)) {
+                return false;
+            }
+        }
+        if (queueSize == queue.length) {
+            JsMessage[] grown = new JsMessage[queue.length * 2];
+            for (int i = 0; i < queueSize; ++i) {
+                grown[i] = peekMessage(i);
+            }
+            queue = grown;
+            queueHead = 0;
+        }
+        queue[(queueHead + queueSize) & (queue.length - 1)] = message;
+        queueSize++;
+        if (queueSize > highWaterMark) {
+            highWaterMark = queueSize;
+        }
+        return true;
+    }
+
+    /**
+     * Called when the ring buffer is full at MAX_QUEUE_CAPACITY. Frees a slot by
+     * dropping the oldest pending progress result, or decides that message is the
+     * one to drop. Every drop is logged with the callback it was meant for.
+     * @return false if message has to be dropped; true if it is to be added, which
+     *         grows the buffer when no slot was freed.
+     */
+    private boolean makeRoomFor(JsMessage message) {
+        if (message.isProgress()) {
+            droppedMessages++;
+            LOG.w(LOG_TAG, "Dropping progress result for " + message.jsPayloadOrCallbackId
+                    + ", queue is full (" + queueSize + " pending)");
+            return false;
+        }
+        for (int i = 0; i < queueSize; ++i) {
+            JsMessage pending = peekMessage(i);
+            if (pending.isProgress()) {
+                removeMessage(i);
+                droppedMessages++;
+                LOG.w(LOG_TAG, "Dropping progress result for " + pending.jsPayloadOrCallbackId
+                        + " to keep a final one, queue is full (" + queueSize + " pending)");
+                return true;
+            }
+        }
+        if (message.pluginResult == null) {
+            droppedMessages++;
+            LOG.w(LOG_TAG, "Dropping Native->JS statement, queue is full (" + queueSize + " pending)");
+            return false;
+        }
+        return true;
+    }
+
+    private static int calculatePackedMessageLength(int messageLen) {
+        return stringSize(messageLen) + messageLen + 1;
+    }
+
+    // Number of decimal digits in a non-negative int, without allocating a String.
+    private static int stringSize(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private StringBuilder takeEncodeBuffer() {
+        StringBuilder sb = encodeBuffer;
+        sb.setLength(0);
+        return sb;
+    }
+
+    private String finishEncodeBuffer(StringBuilder sb) {
+        String ret = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_ENCODE_BUFFER) {
+            encodeBuffer = new StringBuilder(1024);
+        } else {
+            sb.setLength(0);
+        }
+        return ret;
     }
 
     /**
@@ -135,35 +346,38 @@ public class NativeToJsMessageQueue {
                 return null;
             }
             activeBridgeMode.notifyOfFlush(this, fromOnlineEvent);
-            if (queue.isEmpty()) {
+            drainInbox();
+            if (queueSize == 0) {
                 return null;
             }
+            // Single pass: pack messages until the cutoff would be exceeded.
+            StringBuilder sb = takeEncodeBuffer();
             int totalPayloadLen = 0;
-            int numMessagesToSend = 0;
-            for (JsMessage message : queue) {
-                int messageSize = calculatePackedMessageLength(message);
-                if (numMessagesToSend > 0 &&
+            int numMessagesSent = 0;
+            while (queueSize > 0) {
+                JsMessage message = peekMessage(0);
+                int messageLen = message.calculateEncodedLength();
+                int messageSize = calculatePackedMessageLength(messageLen);
+                if (numMessagesSent > 0 &&
                     COMBINED_RESPONSE_CUTOFF > 0 &&
                     totalPayloadLen + messageSize > COMBINED_RESPONSE_CUTOFF
                    ) {
                     break;
                 }
+                sb.ensureCapacity(totalPayloadLen + messageSize + 1);
+                sb.append(messageLen)
+                  .append(' ');
+                message.encodeAsMessage(sb);
+                removeFirstMessage();
                 totalPayloadLen += messageSize;
-                numMessagesToSend += 1;
-            }
-
-            StringBuilder sb = new StringBuilder(totalPayloadLen);
-            for (int i = 0; i < numMessagesToSend; ++i) {
-                JsMessage message = queue.removeFirst();
-                packMessage(message, sb);
+                numMessagesSent += 1;
             }
 
-            if (!queue.isEmpty()) {
+            if (queueSize != 0) {
                 // Attach a char to indicate that there are more messages pending.
                 sb.append('*');
             }
-            String ret = sb.toString();
-            return ret;
+            return finishEncodeBuffer(sb);
         }
     }
 
@@ -172,14 +386,16 @@ public class NativeToJsMessageQueue {
      */
     public String popAndEncodeAsJs() {
         synchronized (this) {
-            int length = queue.size();
+            drainInbox();
+            int length = queueSize;
             if (length == 0) {
                 return null;
             }
+            // Encoded lengths are cached on the messages, so sizing is cheap.
             int totalPayloadLen = 0;
             int numMessagesToSend = 0;
-            for (JsMessage message : queue) {
-                int messageSize = message.calculateEncodedLength() + 50; // overestimate.
+            for (int i = 0; i < length; ++i) {
+                int messageSize = peekMessage(i).calculateEncodedLength() + 50; // overestimate.
                 if (numMessagesToSend > 0 &&
                     COMBINED_RESPONSE_CUTOFF > 0 &&
                     totalPayloadLen + messageSize > COMBINED_RESPONSE_CUTOFF
@@ -189,12 +405,13 @@ public class NativeToJsMessageQueue {
                 totalPayloadLen += messageSize;
                 numMessagesToSend += 1;
             }
-            boolean willSendAllMessages = numMessagesToSend == queue.size();
-            StringBuilder sb = new StringBuilder(totalPayloadLen + (willSendAllMessages ? 0 : 100));
+            boolean willSendAllMessages = numMessagesToSend == length;
+            StringBuilder sb = takeEncodeBuffer();
+            sb.ensureCapacity(totalPayloadLen + (willSendAllMessages ? 0 : 100));
             // Wrap each statement in a try/finally so that if one throws it does
             // not affect the next.
             for (int i = 0; i < numMessagesToSend; ++i) {
-                JsMessage message = queue.removeFirst();
+                JsMessage message = removeFirstMessage();
                 if (willSendAllMessages && (i + 1 == numMessagesToSend)) {
                     message.encodeAsJsMessage(sb);
                 } else {
@@ -209,8 +426,7 @@ public class NativeToJsMessageQueue {
             for (int i = willSendAllMessages ? 1 : 0; i < numMessagesToSend; ++i) {
                 sb.append('}');
             }
-            String ret = sb.toString();
-            return ret;
+            return finishEncodeBuffer(sb);
         }
     }
 
@@ -247,34 +463,75 @@ public class NativeToJsMessageQueue {
     }
 
     private void enqueueMessage(JsMessage message) {
+        if (lockFreeEnqueue) {
+            // Read the generation before the bridge mode: reset() disables the bridge
+            // before bumping the generation, so a message racing with it is either
+            // dropped here or discarded by drainInbox().
+            message.generation = generation;
+            BridgeMode bridgeMode = activeBridgeMode;
+            if (bridgeMode == null) {
+                LOG.d(LOG_TAG, "Dropping Native->JS message due to disabled bridge");
+                return;
+            }
+            // Only progress results are turned away here; drainInbox() sorts out the rest
+            if (inboxSize.incrementAndGet() > MAX_QUEUE_CAPACITY && message.isProgress()) {
+                inboxSize.decrementAndGet();
+                inboxDroppedMessages.incrementAndGet();
+                LOG.w(LOG_TAG, "Dropping progress result for " + message.jsPayloadOrCallbackId + ", inbox is full");
+                return;
+            }
+            inbox.add(message);
+            if (!isPaused()) {
+                bridgeMode.onNativeToJsMessageAvailable(this);
+            }
+            return;
+        }
         synchronized (this) {
             if (activeBridgeMode == null) {
                 LOG.d(LOG_TAG, "Dropping Native->JS message due to disabled bridge");
                 return;
             }
-            queue.add(message);
-            if (!paused) {
+            if (!addMessage(message)) {
+                return;
+            }
+            if (!isPaused()) {
                 activeBridgeMode.onNativeToJsMessageAvailable(this);
             }
         }
     }
 
+    /**
+     * Pauses and unpauses are counted, so the bridge's pause around an exec() can
+     * nest inside a longer pause. Neither takes the queue monitor, unless the last
+     * pause ends with messages pending and the listener has to be fired.
+     */
     public void setPaused(boolean value) {
-        if (paused && value) {
-            // This should never happen. If a use-case for it comes up, we should
-            // change pause to be a counter.
-            LOG.e(LOG_TAG, "nested call to setPaused detected.", new Throwable());
+        if (value) {
+            pauseCount.incrementAndGet();
+            return;
         }
-        paused = value;
-        if (!value) {
+        int count;
+        do {
+            count = pauseCount.get();
+            if (count == 0) {
+                LOG.e(LOG_TAG, "unbalanced call to setPaused(false) detected.", new Throwable());
+                return;
+            }
+        } while (!pauseCount.compareAndSet(count, count - 1));
+        // An enqueue that saw the queue paused left firing the listener to us
+        if (count == 1 && !isEmpty()) {
             synchronized (this) {
-                if (!queue.isEmpty() && activeBridgeMode != null) {
+                if (!isPaused() && !isEmpty() && activeBridgeMode != null) {
                     activeBridgeMode.onNativeToJsMessageAvailable(this);
                 }
             }
         }
     }
 
+    private boolean isPaused() {
+        return pauseCount.get() > 0;
+    }
+
     public static abstract class BridgeMode {
         public abstract void onNativeToJsMessageAvailable(NativeToJsMessageQueue queue);
         public void notifyOfFlush(NativeToJsMessageQueue queue, boolean fromOnlineEvent) {}
@@ -299,7 +556,7 @@ public class NativeToJsMessageQueue {
 
         @Override
         public void onNativeToJsMessageAvailable(final NativeToJsMessageQueue queue) {
-            cordova.getActivity().runOnUiThread(new Runnable() {
+            MainThread.run(cordova, new Runnable() {
                 @Override
                 public void run() {
                     String js = queue.popAndEncodeAsJs();
@@ -372,7 +629,7 @@ public class NativeToJsMessageQueue {
 
         @Override
         public void onNativeToJsMessageAvailable(final NativeToJsMessageQueue queue) {
-            cordova.getActivity().runOnUiThread(new Runnable() {
+            MainThread.run(cordova, new Runnable() {
                 @Override
                 public void run() {
                     String js = queue.popAndEncodeAsJs();
@@ -389,6 +646,10 @@ public class NativeToJsMessageQueue {
     private static class JsMessage {
         final String jsPayloadOrCallbackId;
         final PluginResult pluginResult;
+        // Cached result of calculateEncodedLength(), -1 until computed.
+        private int encodedLength = -1;
+        // Queue generation at enqueue time, only used by the lock-free inbox.
+        int generation;
         JsMessage(String js) {
             if (js == null) {
                 throw new NullPointerException();
@@ -404,6 +665,14 @@ public class NativeToJsMessageQueue {
             this.pluginResult = pluginResult;
         }
 
+        /**
+         * True for a result that keeps its callback: a later result follows, so this
+         * one can be dropped without leaving the callback unanswered.
+         */
+        boolean isProgress() {
+            return pluginResult != null && pluginResult.getKeepCallback();
+        }
+
         static int calculateEncodedLengthHelper(PluginResult pluginResult) {
             switch (pluginResult.getMessageType()) {
                 case PluginResult.MESSAGE_TYPE_BOOLEAN: // f or t
@@ -414,9 +683,8 @@ public class NativeToJsMessageQueue {
                 case PluginResult.MESSAGE_TYPE_STRING: // s
                     return 1 + pluginResult.getStrMessage().length();
                 case PluginResult.MESSAGE_TYPE_BINARYSTRING:
-                    return 1 + pluginResult.getMessage().length();
                 case PluginResult.MESSAGE_TYPE_ARRAYBUFFER:
-                    return 1 + pluginResult.getMessage().length();
+                    return 1 + pluginResult.getBinaryMessageLength();
                 case PluginResult.MESSAGE_TYPE_MULTIPART:
                     int ret = 1;
                     for (int i = 0; i < pluginResult.getMultipartMessagesSize(); i++) {
@@ -432,13 +700,17 @@ public class NativeToJsMessageQueue {
         }
 
         int calculateEncodedLength() {
-            if (pluginResult == null) {
-                return jsPayloadOrCallbackId.length() + 1;
-            }
-            int statusLen = String.valueOf(pluginResult.getStatus()).length();
-            int ret = 2 + statusLen + 1 + jsPayloadOrCallbackId.length() + 1;
-            return ret + calculateEncodedLengthHelper(pluginResult);
+            if (encodedLength < 0) {
+                if (pluginResult == null) {
+                    encodedLength = jsPayloadOrCallbackId.length() + 1;
+                } else {
+                    int statusLen = stringSize(pluginResult.getStatus());
+                    int ret = 2 + statusLen + 1 + jsPayloadOrCallbackId.length() + 1;
+                    encodedLength = ret + calculateEncodedLengthHelper(pluginResult);
+                }
             }
+            return encodedLength;
+        }
 
         static void encodeAsMessageHelper(StringBuilder sb, PluginResult pluginResult) {
             switch (pluginResult.getMessageType()) {
@@ -458,11 +730,11 @@ public class NativeToJsMessageQueue {
                     break;
                 case PluginResult.MESSAGE_TYPE_BINARYSTRING: // S
                     sb.append('S');
-                    sb.append(pluginResult.getMessage());
+                    pluginResult.appendBinaryMessage(sb);
                     break;
                 case PluginResult.MESSAGE_TYPE_ARRAYBUFFER: // A
                     sb.append('A');
-                    sb.append(pluginResult.getMessage());
+                    pluginResult.appendBinaryMessage(sb);
                     break;
                 case PluginResult.MESSAGE_TYPE_MULTIPART:
                     sb.append('M');
@@ -514,14 +786,14 @@ public class NativeToJsMessageQueue {
                     }
                     break;
                 case PluginResult.MESSAGE_TYPE_BINARYSTRING:
-                    sb.append("atob('")
-                            .append(pluginResult.getMessage())
-                            .append("')");
+                    sb.append("atob('");
+                    pluginResult.appendBinaryMessage(sb);
+                    sb.append("')");
                     break;
                 case PluginResult.MESSAGE_TYPE_ARRAYBUFFER:
-                    sb.append("cordova.require('cordova/base64').toArrayBuffer('")
-                            .append(pluginResult.getMessage())
-                            .append("')");
+                    sb.append("cordova.require('cordova/base64').toArrayBuffer('");
+                    pluginResult.appendBinaryMessage(sb);
+                    sb.append("')");
                     break;
                 case PluginResult.MESSAGE_TYPE_NULL:
                     sb.append("null");
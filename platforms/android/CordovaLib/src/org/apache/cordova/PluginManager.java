@@ -21,10 +21,16 @@ package org.apache.cordova;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import android.content.Intent;
 import android.content.res.Configuration;
@@ -51,9 +57,22 @@ public class PluginManager {
 
     private static final int SLOW_EXEC_WARNING_THRESHOLD = Debug.isDebuggerConnected() ? 60 : 16;
 
+    // Policy hooks whose plugin decisions are cached, see checkPolicy()
+    private static final int HOOK_REQUEST = 0;
+    private static final int HOOK_NAVIGATION = 1;
+    private static final int HOOK_BRIDGE_ACCESS = 2;
+    private static final String[] HOOK_METHODS = { "shouldAllowRequest", "shouldAllowNavigation", "shouldAllowBridgeAccess" };
+
+    // Decisions remembered per hook; the whole cache is dropped when it fills up
+    private static final int MAX_CACHED_POLICY_DECISIONS = 256;
+    // Longer URLs (typically data: URLs) are checked every time instead of being kept as keys
+    private static final int MAX_CACHED_POLICY_URL_LENGTH = 2048;
+
+    // Bit mask of the policy hooks each plugin class overrides
+    private static final Map<Class<?>, Integer> overriddenHooks = new ConcurrentHashMap<Class<?>, Integer>();
+
     // List of service entries
-    private final Map<String, CordovaPlugin> pluginMap = Collections.synchronizedMap(new LinkedHashMap<String, CordovaPlugin>());
-    private final Map<String, PluginEntry> entryMap = Collections.synchronizedMap(new LinkedHashMap<String, PluginEntry>());
+    private final PluginRegistry registry = new PluginRegistry(this::createPlugin);
 
     private final CordovaInterface ctx;
     private final CordovaWebView app;
@@ -61,6 +80,61 @@ public class PluginManager {
 
     private CordovaPlugin permissionRequester;
 
+    // Per-plugin initialization time, and the time startupPlugins() held the UI thread
+    private final Map<String, Long> pluginInitNanos = new ConcurrentHashMap<String, Long>();
+    private final Set<String> deferredServices = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile long startupNanos;
+    private volatile long deferredStartupNanos;
+
+    private final AtomicInteger policyGeneration = new AtomicInteger();
+    private volatile PolicySnapshot policy;
+    private final AtomicLong policyCacheHits = new AtomicLong();
+    private final AtomicLong policyCacheMisses = new AtomicLong();
+    private final AtomicLong policyCheckNanos = new AtomicLong();
+
+    private enum Verdict {
+        ALLOW(Boolean.TRUE), DENY(Boolean.FALSE), NONE(null);
+
+        final Boolean value;
+
+        Verdict(Boolean value) {
+            this.value = value;
+        }
+
+        static Verdict of(Boolean value) {
+            return value == null ? NONE : (value ? ALLOW : DENY);
+        }
+    }
+
+    /**
+     * The plugins implementing one policy hook, in registration order, and the
+     * decisions they have made so far.
+     */
+    private static final class PolicyHook {
+        final CordovaPlugin[] plugins;
+        final ConcurrentHashMap<String, Verdict> decisions = new ConcurrentHashMap<String, Verdict>();
+
+        PolicyHook(ArrayList<CordovaPlugin> plugins) {
+            this.plugins = plugins.toArray(new CordovaPlugin[0]);
+        }
+    }
+
+    /**
+     * Immutable view of the policy hooks for one state of the plugin registry.
+     * It is replaced, never modified, when plugins are added or instantiated.
+     */
+    private static final class PolicySnapshot {
+        final int generation;
+        final int registryModCount;
+        final PolicyHook[] hooks;
+
+        PolicySnapshot(int generation, int registryModCount, PolicyHook[] hooks) {
+            this.generation = generation;
+            this.registryModCount = registryModCount;
+            this.hooks = hooks;
+        }
+    }
+
     public PluginManager(CordovaWebView cordovaWebView, CordovaInterface cordova, Collection<PluginEntry> pluginEntries) {
         this.ctx = cordova;
         this.app = cordovaWebView;
@@ -68,15 +142,14 @@ public class PluginManager {
     }
 
     public Collection<PluginEntry> getPluginEntries() {
-        return entryMap.values();
+        return registry.getEntries();
     }
 
     public void setPluginEntries(Collection<PluginEntry> pluginEntries) {
         if (isInitialized) {
             this.onPause(false);
             this.onDestroy();
-            pluginMap.clear();
-            entryMap.clear();
+            registry.clear();
         }
         for (PluginEntry entry : pluginEntries) {
             addService(entry);
@@ -91,32 +164,129 @@ public class PluginManager {
      */
     public void init() {
         LOG.d(TAG, "init()");
+        int span = StartupTimeline.begin("PluginManager.init");
         isInitialized = true;
         this.onPause(false);
         this.onDestroy();
-        pluginMap.clear();
+        registry.resetPlugins();
         this.startupPlugins();
+        StartupTimeline.end(span);
     }
 
     /**
      * Create plugins objects that have onload set.
+     *
+     * <p>Plugins named in the DeferredStartupPlugins preference are not needed for the
+     * first page load, so they are created in parallel on the thread pool while the
+     * remaining ones are created here. A call to a deferred plugin that is not ready
+     * yet waits for it. Plugins that decide on URL policy, serve paths or remap URIs
+     * are never deferred.</p>
      */
     private void startupPlugins() {
-        synchronized (entryMap) {
-            for (PluginEntry entry : entryMap.values()) {
-                // Add a null entry to for each non-startup plugin to avoid ConcurrentModificationException
-                // When iterating plugins.
-                if (entry.onload) {
+        long start = System.nanoTime();
+        Set<String> deferrable = getDeferredStartupPlugins();
+        List<PluginEntry> entries = registry.getEntries();
+        ArrayList<PluginEntry> deferred = new ArrayList<PluginEntry>();
+        deferredServices.clear();
+        for (PluginEntry entry : entries) {
+            if (entry.onload && deferrable.contains(entry.service) && canDeferStartup(entry)) {
+                deferred.add(entry);
+                deferredServices.add(entry.service);
+            }
+        }
+        startDeferredPlugins(deferred);
+
+        for (PluginEntry entry : entries) {
+            if (entry.onload && !deferredServices.contains(entry.service)) {
+                getPlugin(entry.service);
+            }
+        }
+        startupNanos = System.nanoTime() - start;
+        LOG.d(TAG, "startupPlugins: " + (startupNanos / 1000000) + "ms, " + deferred.size() + " deferred");
+    }
+
+    private Set<String> getDeferredStartupPlugins() {
+        HashSet<String> services = new HashSet<String>();
+        for (String service : app.getPreferences().getString("DeferredStartupPlugins", "").split(",")) {
+            if (!service.trim().isEmpty()) {
+                services.add(service.trim());
+            }
+        }
+        return services;
+    }
+
+    private static boolean canDeferStartup(PluginEntry entry) {
+        Class<?> pluginClass;
+        try {
+            pluginClass = entry.plugin != null ? entry.plugin.getClass() : Class.forName(entry.pluginClass);
+        } catch (ClassNotFoundException e) {
+            // Let the normal startup path report it
+            return false;
+        }
+        if (getOverriddenHooks(pluginClass) != 0) {
+            LOG.w(TAG, "Not deferring startup of " + entry.service + ": the first page load needs its URL policy");
+            return false;
+        }
+        // getPluginPathHandlers() and remapUri() only ask plugins that already exist
+        if (overrides(pluginClass, "getPathHandler") || overrides(pluginClass, "remapUri", Uri.class)) {
+            LOG.w(TAG, "Not deferring startup of " + entry.service + ": the first page load needs its path handler or URI remapping");
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean overrides(Class<?> pluginClass, String method, Class<?>... parameterTypes) {
+        try {
+            return pluginClass.getMethod(method, parameterTypes).getDeclaringClass() != CordovaPlugin.class;
+        } catch (NoSuchMethodException e) {
+            // Every CordovaPlugin has the method; keep the plugin to be safe
+            return true;
+        }
+    }
+
+    private void startDeferredPlugins(List<PluginEntry> entries) {
+        deferredStartupNanos = entries.isEmpty() ? 0 : -1;
+        if (entries.isEmpty()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final AtomicInteger remaining = new AtomicInteger(entries.size());
+        for (final PluginEntry entry : entries) {
+            ctx.getThreadPool().execute(() -> {
+                try {
                     getPlugin(entry.service);
+                } catch (RuntimeException e) {
+                    // The next getPlugin() call retries, on the caller's thread
+                    LOG.e(TAG, "Deferred startup of " + entry.service + " failed", e);
                 }
-                else {
-                    LOG.d(TAG, "startupPlugins: put - " + entry.service);
-                    pluginMap.put(entry.service, null);
+                if (remaining.decrementAndGet() == 0) {
+                    deferredStartupNanos = System.nanoTime() - start;
+                    LOG.d(TAG, "startupPlugins: deferred plugins ready after " + (deferredStartupNanos / 1000000) + "ms");
                 }
-            }
+            });
         }
     }
 
+    /**
+     * Returns how long startup took: the time the UI thread spent creating plugins,
+     * the time until the deferred plugins were ready (-1 while they are not), and the
+     * initialization time of every plugin created so far.
+     */
+    public JSONObject getStartupStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("startupMs", startupNanos / 1000000.0);
+        stats.put("deferredMs", deferredStartupNanos < 0 ? -1 : deferredStartupNanos / 1000000.0);
+        JSONObject plugins = new JSONObject();
+        for (Map.Entry<String, Long> timing : pluginInitNanos.entrySet()) {
+            JSONObject plugin = new JSONObject();
+            plugin.put("initMs", timing.getValue() / 1000000.0);
+            plugin.put("deferred", deferredServices.contains(timing.getKey()));
+            plugins.put(timing.getKey(), plugin);
+        }
+        stats.put("plugins", plugins);
+        return stats;
+    }
+
     /**
      * Receives a request for execution and fulfills it by finding the appropriate
      * Java class and calling it's execute method.
@@ -173,21 +343,29 @@ public class PluginManager {
      * @return              CordovaPlugin or null
      */
     public CordovaPlugin getPlugin(String service) {
-        CordovaPlugin ret = pluginMap.get(service);
-        if (ret == null) {
-            PluginEntry pe = entryMap.get(service);
-            if (pe == null) {
+        return registry.getPlugin(service);
+    }
+
+    /**
+     * Creates the plugin for an entry on its first use. The registry calls this
+     * once per entry, even when several threads look the plugin up at once.
+     */
+    private CordovaPlugin createPlugin(PluginEntry pe) {
+        CordovaPlugin ret;
+        if (pe.plugin != null) {
+            ret = pe.plugin;
+        } else {
+            ret = instantiatePlugin(pe.pluginClass);
+            if (ret == null) {
                 return null;
             }
-            if (pe.plugin != null) {
-                ret = pe.plugin;
-            } else {
-                ret = instantiatePlugin(pe.pluginClass);
-            }
-            ret.privateInitialize(service, ctx, app, app.getPreferences());
-            LOG.d(TAG, "getPlugin - put: " + service);
-            pluginMap.put(service, ret);
         }
+        long start = System.nanoTime();
+        int span = StartupTimeline.begin("initialize " + pe.service);
+        ret.privateInitialize(pe.service, ctx, app, app.getPreferences());
+        StartupTimeline.end(span);
+        pluginInitNanos.put(pe.service, System.nanoTime() - start);
+        LOG.d(TAG, "getPlugin - put: " + pe.service);
         return ret;
     }
 
@@ -221,12 +399,11 @@ public class PluginManager {
      * @param entry             The plugin entry
      */
     public void addService(PluginEntry entry) {
-        this.entryMap.put(entry.service, entry);
         if (entry.plugin != null) {
             entry.plugin.privateInitialize(entry.service, ctx, app, app.getPreferences());
             LOG.d(TAG, "addService: put - " + entry.service);
-            pluginMap.put(entry.service, entry.plugin);
         }
+        registry.add(entry, entry.plugin);
     }
 
     /**
@@ -235,12 +412,8 @@ public class PluginManager {
      * @param multitasking      Flag indicating if multitasking is turned on for app
      */
     public void onPause(boolean multitasking) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onPause(multitasking);
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onPause(multitasking);
         }
     }
 
@@ -255,11 +428,9 @@ public class PluginManager {
      * @return                  True if there is a plugin which will resolve this auth challenge, otherwise False
      */
     public boolean onReceivedHttpAuthRequest(CordovaWebView view, ICordovaHttpAuthHandler handler, String host, String realm) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null && plugin.onReceivedHttpAuthRequest(app, handler, host, realm)) {
-                    return true;
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            if (plugin.onReceivedHttpAuthRequest(app, handler, host, realm)) {
+                return true;
             }
         }
         return false;
@@ -274,11 +445,9 @@ public class PluginManager {
      * @return                  True if plugin will resolve this auth challenge, otherwise False
      */
     public boolean onReceivedClientCertRequest(CordovaWebView view, ICordovaClientCertRequest request) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null && plugin.onReceivedClientCertRequest(app, request)) {
-                    return true;
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            if (plugin.onReceivedClientCertRequest(app, request)) {
+                return true;
             }
         }
         return false;
@@ -290,12 +459,8 @@ public class PluginManager {
      * @param multitasking      Flag indicating if multitasking is turned on for app
      */
     public void onResume(boolean multitasking) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onResume(multitasking);
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onResume(multitasking);
         }
     }
 
@@ -303,12 +468,8 @@ public class PluginManager {
      * Called when the activity is becoming visible to the user.
      */
     public void onStart() {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onStart();
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onStart();
         }
     }
 
@@ -316,12 +477,8 @@ public class PluginManager {
      * Called when the activity is no longer visible to the user.
      */
     public void onStop() {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onStop();
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onStop();
         }
     }
 
@@ -329,12 +486,8 @@ public class PluginManager {
      * The final call you receive before your activity is destroyed.
      */
     public void onDestroy() {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onDestroy();
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onDestroy();
         }
     }
 
@@ -347,12 +500,8 @@ public class PluginManager {
      */
     public Object postMessage(String id, Object data) {
         LOG.d(TAG, "postMessage: " + id);
-        synchronized (this.pluginMap) {
-            this.pluginMap.forEach((s, plugin) -> {
-                if (plugin != null) {
-                    plugin.onMessage(id, data);
-                }
-            });
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onMessage(id, data);
         }
         return ctx.onMessage(id, data);
     }
@@ -361,12 +510,8 @@ public class PluginManager {
      * Called when the activity receives a new intent.
      */
     public void onNewIntent(Intent intent) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onNewIntent(intent);
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onNewIntent(intent);
         }
     }
 
@@ -402,16 +547,9 @@ public class PluginManager {
      *                  false to block the resource.
      */
     public boolean shouldAllowRequest(String url) {
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null) {
-                    Boolean result = plugin.shouldAllowRequest(url);
-                    if (result != null) {
-                        return result;
-                    }
-                }
-            }
+        Boolean result = checkPolicy(HOOK_REQUEST, url);
+        if (result != null) {
+            return result;
         }
 
         // Default policy:
@@ -442,16 +580,9 @@ public class PluginManager {
      *                  false to block the navigation.
      */
     public boolean shouldAllowNavigation(String url) {
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null) {
-                    Boolean result = plugin.shouldAllowNavigation(url);
-                    if (result != null) {
-                        return result;
-                    }
-                }
-            }
+        Boolean result = checkPolicy(HOOK_NAVIGATION, url);
+        if (result != null) {
+            return result;
         }
 
         // Default policy:
@@ -463,22 +594,153 @@ public class PluginManager {
      * Called when the WebView is requesting the exec() bridge be enabled.
      */
     public boolean shouldAllowBridgeAccess(String url) {
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null) {
-                    Boolean result = plugin.shouldAllowBridgeAccess(url);
-                    if (result != null) {
-                        return result;
-                    }
-                }
-            }
+        Boolean result = checkPolicy(HOOK_BRIDGE_ACCESS, url);
+        if (result != null) {
+            return result;
         }
 
         // Default policy:
         return url.startsWith(getLaunchUrlPrefix());
     }
 
+    /**
+     * Forgets the cached shouldAllowRequest/shouldAllowNavigation/shouldAllowBridgeAccess
+     * decisions. This happens whenever a plugin is added or instantiated and on reset;
+     * a plugin that changes its own policy at any other time (e.g. by editing its
+     * AllowList) must call this for the change to take effect.
+     */
+    public void invalidatePolicyCache() {
+        policyGeneration.incrementAndGet();
+        policy = null;
+    }
+
+    /**
+     * Returns the policy decision cache counters: hits, misses, the time spent in
+     * plugin policy hooks, and how many plugins implement each hook.
+     */
+    public JSONObject getPolicyStats() throws JSONException {
+        PolicySnapshot snapshot = getPolicy();
+        JSONObject stats = new JSONObject();
+        stats.put("hits", policyCacheHits.get());
+        stats.put("misses", policyCacheMisses.get());
+        stats.put("checkTimeMs", policyCheckNanos.get() / 1000000.0);
+        for (int hook = 0; hook < HOOK_METHODS.length; hook++) {
+            JSONObject hookStats = new JSONObject();
+            hookStats.put("plugins", snapshot.hooks[hook].plugins.length);
+            hookStats.put("entries", snapshot.hooks[hook].decisions.size());
+            stats.put(HOOK_METHODS[hook], hookStats);
+        }
+        return stats;
+    }
+
+    /**
+     * Asks the plugins implementing hook about url and returns the first non-null
+     * answer, or null if none has an opinion. Answers are cached per URL until the
+     * registry changes, so repeated requests do not reach the plugins again.
+     */
+    private Boolean checkPolicy(int hook, String url) {
+        PolicyHook policyHook = getPolicy().hooks[hook];
+        boolean cacheable = url.length() <= MAX_CACHED_POLICY_URL_LENGTH;
+        if (cacheable) {
+            Verdict cached = policyHook.decisions.get(url);
+            if (cached != null) {
+                policyCacheHits.incrementAndGet();
+                return cached.value;
+            }
+        }
+        policyCacheMisses.incrementAndGet();
+
+        long start = System.nanoTime();
+        Boolean result = null;
+        for (CordovaPlugin plugin : policyHook.plugins) {
+            result = callPolicyHook(hook, plugin, url);
+            if (result != null) {
+                break;
+            }
+        }
+        policyCheckNanos.addAndGet(System.nanoTime() - start);
+
+        if (cacheable) {
+            if (policyHook.decisions.size() >= MAX_CACHED_POLICY_DECISIONS) {
+                policyHook.decisions.clear();
+            }
+            policyHook.decisions.put(url, Verdict.of(result));
+        }
+        return result;
+    }
+
+    private static Boolean callPolicyHook(int hook, CordovaPlugin plugin, String url) {
+        switch (hook) {
+            case HOOK_REQUEST:
+                return plugin.shouldAllowRequest(url);
+            case HOOK_NAVIGATION:
+                return plugin.shouldAllowNavigation(url);
+            default:
+                return plugin.shouldAllowBridgeAccess(url);
+        }
+    }
+
+    /**
+     * Returns the current policy snapshot, rebuilding it if the registry changed.
+     * Reads do not lock; a snapshot built while the registry is changing carries
+     * the old generation and is rebuilt by the next caller.
+     */
+    private PolicySnapshot getPolicy() {
+        int generation = policyGeneration.get();
+        int registryModCount = registry.getModCount();
+        PolicySnapshot snapshot = policy;
+        if (snapshot != null && snapshot.generation == generation && snapshot.registryModCount == registryModCount) {
+            return snapshot;
+        }
+        ArrayList<ArrayList<CordovaPlugin>> plugins = new ArrayList<ArrayList<CordovaPlugin>>();
+        for (int hook = 0; hook < HOOK_METHODS.length; hook++) {
+            plugins.add(new ArrayList<CordovaPlugin>());
+        }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            int hooks = getOverriddenHooks(plugin.getClass());
+            for (int hook = 0; hook < HOOK_METHODS.length; hook++) {
+                if ((hooks & (1 << hook)) != 0) {
+                    plugins.get(hook).add(plugin);
+                }
+            }
+        }
+        PolicyHook[] hooks = new PolicyHook[HOOK_METHODS.length];
+        for (int hook = 0; hook < hooks.length; hook++) {
+            hooks[hook] = new PolicyHook(plugins.get(hook));
+        }
+        snapshot = new PolicySnapshot(generation, registryModCount, hooks);
+        policy = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Returns a bit mask of the policy hooks the plugin class overrides. Plugins
+     * that keep the CordovaPlugin defaults always answer null and are skipped.
+     */
+    private static int getOverriddenHooks(Class<?> pluginClass) {
+        Integer cached = overriddenHooks.get(pluginClass);
+        if (cached != null) {
+            return cached;
+        }
+        int hooks = 0;
+        for (int hook = 0; hook < HOOK_METHODS.length; hook++) {
+            try {
+                if (pluginClass.getMethod(HOOK_METHODS[hook], String.class).getDeclaringClass() != CordovaPlugin.class) {
+                    hooks |= 1 << hook;
+                }
+            } catch (NoSuchMethodException e) {
+                // Every CordovaPlugin has the hooks; keep the plugin to be safe
+                hooks |= 1 << hook;
+            }
+        }
+        // The default shouldAllowBridgeAccess() defers to shouldAllowNavigation()
+        if ((hooks & (1 << HOOK_NAVIGATION)) != 0) {
+            hooks |= 1 << HOOK_BRIDGE_ACCESS;
+        }
+        overriddenHooks.put(pluginClass, hooks);
+        return hooks;
+    }
+
     /**
      * Called when the WebView is going not going to navigate, but may launch
      * an Intent for an URL.
@@ -492,15 +754,10 @@ public class PluginManager {
      *                  false to block the intent.
      */
     public Boolean shouldOpenExternalUrl(String url) {
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null) {
-                    Boolean result = plugin.shouldOpenExternalUrl(url);
-                    if (result != null) {
-                        return result;
-                    }
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            Boolean result = plugin.shouldOpenExternalUrl(url);
+            if (result != null) {
+                return result;
             }
         }
         // Default policy:
@@ -515,39 +772,29 @@ public class PluginManager {
      * @return                  Return false to allow the URL to load, return true to prevent the URL from loading.
      */
     public boolean onOverrideUrlLoading(String url) {
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null && plugin.onOverrideUrlLoading(url)) {
-                    return true;
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            if (plugin.onOverrideUrlLoading(url)) {
+                return true;
             }
-            return false;
         }
+        return false;
     }
 
     /**
      * Called when the app navigates or refreshes.
      */
     public void onReset() {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onReset();
-                }
-            }
+        invalidatePolicyCache();
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onReset();
         }
     }
 
     Uri remapUri(Uri uri) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    Uri ret = plugin.remapUri(uri);
-                    if (ret != null) {
-                        return ret;
-                    }
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            Uri ret = plugin.remapUri(uri);
+            if (ret != null) {
+                return ret;
             }
         }
         return null;
@@ -579,25 +826,17 @@ public class PluginManager {
      * @param newConfig		The new device configuration
      */
     public void onConfigurationChanged(Configuration newConfig) {
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    plugin.onConfigurationChanged(newConfig);
-                }
-            }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            plugin.onConfigurationChanged(newConfig);
         }
     }
 
     public Bundle onSaveInstanceState() {
         Bundle state = new Bundle();
-        synchronized (this.pluginMap) {
-            for (CordovaPlugin plugin : this.pluginMap.values()) {
-                if (plugin != null) {
-                    Bundle pluginState = plugin.onSaveInstanceState();
-                    if (pluginState != null) {
-                        state.putBundle(plugin.getServiceName(), pluginState);
-                    }
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            Bundle pluginState = plugin.onSaveInstanceState();
+            if (pluginState != null) {
+                state.putBundle(plugin.getServiceName(), pluginState);
             }
         }
         return state;
@@ -610,8 +849,8 @@ public class PluginManager {
      */
     public ArrayList<CordovaPluginPathHandler> getPluginPathHandlers() {
         ArrayList<CordovaPluginPathHandler> handlers = new ArrayList<CordovaPluginPathHandler>();
-        for (CordovaPlugin plugin : this.pluginMap.values()) {
-            if (plugin != null && plugin.getPathHandler() != null) {
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            if (plugin.getPathHandler() != null) {
                 handlers.add(plugin.getPathHandler());
             }
         }
@@ -629,14 +868,9 @@ public class PluginManager {
      */
     public boolean onRenderProcessGone(final WebView view, RenderProcessGoneDetail detail) {
         boolean result = false;
-        synchronized (this.entryMap) {
-            for (PluginEntry entry : this.entryMap.values()) {
-                CordovaPlugin plugin = pluginMap.get(entry.service);
-                if (plugin != null) {
-                    if (plugin.onRenderProcessGone(view, detail)) {
-                        result = true;
-                    }
-                }
+        for (CordovaPlugin plugin : registry.getPlugins()) {
+            if (plugin.onRenderProcessGone(view, detail)) {
+                result = true;
             }
         }
 
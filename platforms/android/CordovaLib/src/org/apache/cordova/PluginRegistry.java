@@ -0,0 +1,301 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The plugin entries known to a PluginManager and the plugins created for them.
+ *
+ * <p>Services are only added while the app starts up, but looked up on every exec()
+ * call, so the registry is an immutable snapshot that is copied on each change and
+ * read without locking. Each plugin is created exactly once, no matter how many
+ * threads ask for it first.</p>
+ *
+ * <p>Creation runs outside any lock, since a plugin's initialize() may look up
+ * other plugins. A thread that asks for a plugin another thread is creating waits
+ * for it, unless waiting would close a cycle of plugins waiting on each other;
+ * then the lookup returns null instead of deadlocking.</p>
+ */
+public class PluginRegistry {
+    private static final String TAG = "PluginRegistry";
+
+    /**
+     * Creates and initializes the plugin for an entry.
+     */
+    public interface PluginFactory {
+        /**
+         * @return The initialized plugin, or null if it could not be created
+         */
+        CordovaPlugin create(PluginEntry entry);
+    }
+
+    private static final class Slot {
+        final PluginEntry entry;
+        volatile CordovaPlugin plugin;
+        // The creation in progress and the thread running it; guarded by the slot
+        FutureTask<CordovaPlugin> creation;
+        volatile Thread creator;
+
+        Slot(PluginEntry entry, CordovaPlugin plugin) {
+            this.entry = entry;
+            this.plugin = plugin;
+        }
+    }
+
+    private static final class Snapshot {
+        final Slot[] slots;
+        final HashMap<String, Slot> byService;
+
+        Snapshot(Slot[] slots) {
+            this.slots = slots;
+            this.byService = new HashMap<String, Slot>(slots.length * 2);
+            for (Slot slot : slots) {
+                byService.put(slot.entry.service, slot);
+            }
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(new Slot[0]);
+
+    private final PluginFactory factory;
+    private final AtomicInteger modCount = new AtomicInteger();
+    // The slot each thread is waiting for, to find cycles between creations
+    private final ConcurrentHashMap<Thread, Slot> waitingFor = new ConcurrentHashMap<Thread, Slot>();
+    private volatile Snapshot snapshot = EMPTY;
+
+    public PluginRegistry(PluginFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the plugin for service, creating it on first use, or null if the
+     * service is unknown or its plugin cannot be created.
+     */
+    public CordovaPlugin getPlugin(String service) {
+        Slot slot = snapshot.byService.get(service);
+        if (slot == null) {
+            return null;
+        }
+        CordovaPlugin plugin = slot.plugin;
+        if (plugin != null) {
+            return plugin;
+        }
+        FutureTask<CordovaPlugin> creation;
+        boolean owner = false;
+        synchronized (slot) {
+            plugin = slot.plugin;
+            if (plugin != null) {
+                return plugin;
+            }
+            creation = slot.creation;
+            if (creation == null) {
+                creation = new FutureTask<CordovaPlugin>(new Creation(slot));
+                slot.creation = creation;
+                slot.creator = Thread.currentThread();
+                owner = true;
+            }
+        }
+        if (owner) {
+            creation.run();
+            return result(creation);
+        }
+        Thread current = Thread.currentThread();
+        waitingFor.put(current, slot);
+        try {
+            if (waitCloses(slot, current)) {
+                LOG.e(TAG, "Plugins wait on each other while being created, returning null for " + service);
+                return null;
+            }
+            return result(creation);
+        } finally {
+            waitingFor.remove(current);
+        }
+    }
+
+    private final class Creation implements Callable<CordovaPlugin> {
+        private final Slot slot;
+
+        Creation(Slot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public CordovaPlugin call() {
+            CordovaPlugin plugin = null;
+            try {
+                plugin = factory.create(slot.entry);
+                return plugin;
+            } finally {
+                synchronized (slot) {
+                    if (plugin != null) {
+                        slot.plugin = plugin;
+                        modCount.incrementAndGet();
+                    }
+                    // A failed creation is tried again on the next lookup
+                    slot.creation = null;
+                    slot.creator = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * True if the thread creating slot is, through the slots the creating threads
+     * wait for, waiting for current.
+     */
+    private boolean waitCloses(Slot slot, Thread current) {
+        // Bounded, as the chain may change while it is walked
+        for (int hops = 0; slot != null && hops < 64; hops++) {
+            Thread creator = slot.creator;
+            if (creator == null) {
+                return false;
+            }
+            if (creator == current) {
+                return true;
+            }
+            slot = waitingFor.get(creator);
+        }
+        return false;
+    }
+
+    private static CordovaPlugin result(FutureTask<CordovaPlugin> creation) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return creation.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the plugin for service if it has already been created.
+     */
+    public CordovaPlugin peekPlugin(String service) {
+        Slot slot = snapshot.byService.get(service);
+        return slot != null ? slot.plugin : null;
+    }
+
+    /**
+     * Adds an entry, replacing any entry for the same service in place.
+     *
+     * @param plugin    The already initialized plugin for the entry, or null to create it on first use
+     */
+    public synchronized void add(PluginEntry entry, CordovaPlugin plugin) {
+        Slot[] slots = snapshot.slots;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].entry.service.equals(entry.service)) {
+                slots = slots.clone();
+                // Like a map put, an existing plugin instance is kept unless replaced
+                slots[i] = new Slot(entry, plugin != null ? plugin : slots[i].plugin);
+                publish(slots);
+                return;
+            }
+        }
+        slots = Arrays.copyOf(slots, slots.length + 1);
+        slots[slots.length - 1] = new Slot(entry, plugin);
+        publish(slots);
+    }
+
+    /**
+     * Forgets every plugin instance but keeps the entries, so plugins are created
+     * again on their next use.
+     */
+    public synchronized void resetPlugins() {
+        Slot[] slots = snapshot.slots.clone();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(slots[i].entry, null);
+        }
+        publish(slots);
+    }
+
+    /**
+     * Removes every entry and plugin.
+     */
+    public synchronized void clear() {
+        publish(EMPTY.slots);
+    }
+
+    /**
+     * @return The entries in the order they were added
+     */
+    public List<PluginEntry> getEntries() {
+        Slot[] slots = snapshot.slots;
+        ArrayList<PluginEntry> entries = new ArrayList<PluginEntry>(slots.length);
+        for (Slot slot : slots) {
+            entries.add(slot.entry);
+        }
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return The plugins created so far, in the order their entries were added
+     */
+    public CordovaPlugin[] getPlugins() {
+        Slot[] slots = snapshot.slots;
+        CordovaPlugin[] plugins = new CordovaPlugin[slots.length];
+        int count = 0;
+        for (Slot slot : slots) {
+            CordovaPlugin plugin = slot.plugin;
+            if (plugin != null) {
+                plugins[count++] = plugin;
+            }
+        }
+        return count == plugins.length ? plugins : Arrays.copyOf(plugins, count);
+    }
+
+    /**
+     * Returns a counter that changes whenever an entry is added or removed or a
+     * plugin is created, for callers that cache something derived from the plugins.
+     */
+    public int getModCount() {
+        return modCount.get();
+    }
+
+    private void publish(Slot[] slots) {
+        snapshot = slots.length == 0 ? EMPTY : new Snapshot(slots);
+        modCount.incrementAndGet();
+    }
+}
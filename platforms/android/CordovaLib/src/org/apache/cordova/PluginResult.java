@@ -23,8 +23,6 @@ import java.util.List;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import android.util.Base64;
-
 public class PluginResult {
     private final int status;
     private final int messageType;
@@ -32,6 +30,17 @@ public class PluginResult {
     private String strMessage;
     private String encodedMessage;
     private List<PluginResult> multipartMessages;
+    // Raw payload of ARRAYBUFFER / BINARYSTRING results. It is base64-encoded
+    // lazily, straight into the bridge's output buffer, by appendBinaryMessage().
+    // That saves the per-result base64 String; the bridge still holds the base64
+    // form in its buffer and in the String it hands to the WebView.
+    private byte[] binaryData;
+    private int binaryOffset;
+    private int binaryLength;
+
+    private static final char[] BASE64_ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int BASE64_CHUNK_CHARS = 4096;
 
     public PluginResult(Status status) {
         this(status, PluginResult.StatusMessages[status.ordinal()]);
@@ -61,6 +70,12 @@ public class PluginResult {
         this.encodedMessage = ""+i;
     }
 
+    public PluginResult(Status status, long l) {
+        this.status = status.ordinal();
+        this.messageType = MESSAGE_TYPE_NUMBER;
+        this.encodedMessage = ""+l;
+    }
+
     public PluginResult(Status status, float f) {
         this.status = status.ordinal();
         this.messageType = MESSAGE_TYPE_NUMBER;
@@ -78,9 +93,23 @@ public class PluginResult {
     }
 
     public PluginResult(Status status, byte[] data, boolean binaryString) {
+        this(status, data, 0, data.length, binaryString);
+    }
+
+    /**
+     * Creates a binary result over a slice of data without copying it.
+     * The array is encoded when the result is sent, so it must not be
+     * modified afterwards.
+     */
+    public PluginResult(Status status, byte[] data, int offset, int length, boolean binaryString) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " length=" + length + " size=" + data.length);
+        }
         this.status = status.ordinal();
         this.messageType = binaryString ? MESSAGE_TYPE_BINARYSTRING : MESSAGE_TYPE_ARRAYBUFFER;
-        this.encodedMessage = Base64.encodeToString(data, Base64.NO_WRAP);
+        this.binaryData = data;
+        this.binaryOffset = offset;
+        this.binaryLength = length;
     }
 
     // The keepCallback and status of multipartMessages are ignored.
@@ -103,12 +132,67 @@ public class PluginResult {
     }
 
     public String getMessage() {
+        if (encodedMessage == null && binaryData != null) {
+            // Only callers outside the bridge get here; the bridge appends the bytes directly
+            StringBuilder sb = new StringBuilder(getBinaryMessageLength());
+            appendBinaryMessage(sb);
+            encodedMessage = sb.toString();
+        }
         if (encodedMessage == null) {
             encodedMessage = JSONObject.quote(strMessage);
         }
         return encodedMessage;
     }
 
+    /**
+     * @return the length of the base64 form of a binary message, without encoding it.
+     */
+    public int getBinaryMessageLength() {
+        if (binaryData == null) {
+            return getMessage().length();
+        }
+        return ((binaryLength + 2) / 3) * 4;
+    }
+
+    /**
+     * Appends the base64 form of a binary message to sb, a chunk at a time.
+     */
+    public void appendBinaryMessage(StringBuilder sb) {
+        if (binaryData == null || encodedMessage != null) {
+            sb.append(getMessage());
+            return;
+        }
+        sb.ensureCapacity(sb.length() + getBinaryMessageLength());
+        char[] chunk = new char[Math.min(BASE64_CHUNK_CHARS, getBinaryMessageLength())];
+        int pos = 0;
+        int i = binaryOffset;
+        int end = binaryOffset + binaryLength;
+        while (end - i >= 3) {
+            int bits = (binaryData[i] & 0xff) << 16 | (binaryData[i + 1] & 0xff) << 8 | (binaryData[i + 2] & 0xff);
+            i += 3;
+            chunk[pos++] = BASE64_ALPHABET[bits >>> 18];
+            chunk[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            chunk[pos++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+            chunk[pos++] = BASE64_ALPHABET[bits & 0x3f];
+            if (pos == chunk.length) {
+                sb.append(chunk, 0, pos);
+                pos = 0;
+            }
+        }
+        int remaining = end - i;
+        if (remaining > 0) {
+            int bits = (binaryData[i] & 0xff) << 16;
+            if (remaining == 2) {
+                bits |= (binaryData[i + 1] & 0xff) << 8;
+            }
+            chunk[pos++] = BASE64_ALPHABET[bits >>> 18];
+            chunk[pos++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+            chunk[pos++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : '=';
+            chunk[pos++] = '=';
+        }
+        sb.append(chunk, 0, pos);
+    }
+
     public int getMultipartMessagesSize() {
         return multipartMessages.size();
     }
@@ -0,0 +1,160 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova;
+
+import android.os.Process;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the stages of app startup (activity creation, config parsing, WebView and
+ * plugin initialization, page load, deviceready) so time-to-first-keystroke can be
+ * measured on a device.
+ *
+ * <p>Recording is always on and cheap: events go into preallocated arrays, and a
+ * span costs two System.nanoTime() calls and no allocation. Once the arrays are full
+ * further events are dropped, so only the first CAPACITY events of the process are
+ * kept. The timeline can be exported in the Chrome trace event format, which
+ * chrome://tracing and ui.perfetto.dev open directly.</p>
+ *
+ * <pre>
+ * int span = StartupTimeline.begin("PluginManager.init");
+ * ...
+ * StartupTimeline.end(span);
+ * </pre>
+ */
+public final class StartupTimeline {
+    public static final int CAPACITY = 512;
+
+    // Marks an event that has not ended yet, or an instant event
+    private static final long OPEN = -1;
+    private static final long INSTANT = -2;
+
+    private static final String[] names = new String[CAPACITY];
+    private static final String[] threadNames = new String[CAPACITY];
+    private static final long[] threadIds = new long[CAPACITY];
+    private static final long[] startNanos = new long[CAPACITY];
+    private static final long[] durationNanos = new long[CAPACITY];
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private StartupTimeline() {
+    }
+
+    /**
+     * Starts a span on the current thread.
+     *
+     * @return The id to pass to end(), or -1 if the timeline is full
+     */
+    public static int begin(String name) {
+        return record(name, OPEN);
+    }
+
+    /**
+     * Ends a span started by begin(). Ending a span more than once, or ending -1, does nothing.
+     */
+    public static void end(int span) {
+        if (span < 0 || span >= CAPACITY) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (durationNanos) {
+            if (durationNanos[span] == OPEN) {
+                durationNanos[span] = now - startNanos[span];
+            }
+        }
+    }
+
+    /**
+     * Records a point in time, such as a callback that has no duration of its own.
+     */
+    public static void mark(String name) {
+        record(name, INSTANT);
+    }
+
+    private static int record(String name, long duration) {
+        int index = count.getAndIncrement();
+        if (index >= CAPACITY) {
+            return -1;
+        }
+        Thread thread = Thread.currentThread();
+        synchronized (durationNanos) {
+            names[index] = name;
+            threadNames[index] = thread.getName();
+            threadIds[index] = thread.getId();
+            durationNanos[index] = duration;
+            startNanos[index] = System.nanoTime();
+        }
+        return index;
+    }
+
+    /**
+     * Exports the timeline as a Chrome trace: {"traceEvents": [...]}. Spans that have
+     * not ended yet are exported as ending now.
+     */
+    public static JSONObject toChromeTrace() throws JSONException {
+        int pid = Process.myPid();
+        long now = System.nanoTime();
+        JSONArray events = new JSONArray();
+        HashMap<Long, String> threads = new HashMap<Long, String>();
+        synchronized (durationNanos) {
+            int recorded = Math.min(count.get(), CAPACITY);
+            for (int i = 0; i < recorded; i++) {
+                if (names[i] == null) {
+                    // Claimed by record() on another thread, not written yet
+                    continue;
+                }
+                JSONObject event = new JSONObject();
+                event.put("name", names[i]);
+                event.put("cat", "startup");
+                event.put("pid", pid);
+                event.put("tid", threadIds[i]);
+                event.put("ts", startNanos[i] / 1000.0);
+                if (durationNanos[i] == INSTANT) {
+                    event.put("ph", "i");
+                    event.put("s", "t");
+                } else {
+                    long duration = durationNanos[i] == OPEN ? now - startNanos[i] : durationNanos[i];
+                    event.put("ph", "X");
+                    event.put("dur", duration / 1000.0);
+                }
+                events.put(event);
+                threads.put(threadIds[i], threadNames[i]);
+            }
+        }
+        for (HashMap.Entry<Long, String> thread : threads.entrySet()) {
+            JSONObject metadata = new JSONObject();
+            metadata.put("name", "thread_name");
+            metadata.put("ph", "M");
+            metadata.put("pid", pid);
+            metadata.put("tid", thread.getKey());
+            metadata.put("args", new JSONObject().put("name", thread.getValue()));
+            events.put(metadata);
+        }
+        JSONObject trace = new JSONObject();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        trace.put("droppedEvents", Math.max(0, count.get() - CAPACITY));
+        return trace;
+    }
+}
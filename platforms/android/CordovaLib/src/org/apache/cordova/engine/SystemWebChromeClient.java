@@ -76,7 +76,7 @@ public class SystemWebChromeClient extends WebChromeClient {
     public SystemWebChromeClient(SystemWebViewEngine parentEngine) {
         this.parentEngine = parentEngine;
         appContext = parentEngine.webView.getContext();
-        dialogsHelper = new CordovaDialogsHelper(appContext);
+        dialogsHelper = new CordovaDialogsHelper(appContext, parentEngine.webView);
     }
 
     /**
@@ -37,6 +37,7 @@ import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
+import org.apache.cordova.AssetCache;
 import org.apache.cordova.AuthenticationToken;
 import org.apache.cordova.CordovaClientCertRequest;
 import org.apache.cordova.CordovaHttpAuthHandler;
@@ -44,11 +45,14 @@ import org.apache.cordova.CordovaPluginPathHandler;
 import org.apache.cordova.CordovaResourceApi;
 import org.apache.cordova.LOG;
 import org.apache.cordova.PluginManager;
+import org.apache.cordova.StartupTimeline;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
 
 import androidx.webkit.WebViewAssetLoader;
 
@@ -64,14 +68,17 @@ public class SystemWebViewClient extends WebViewClient {
     private static final String TAG = "SystemWebViewClient";
     protected final SystemWebViewEngine parentEngine;
     private final WebViewAssetLoader assetLoader;
+    private final AssetCache assetCache = AssetCache.getShared();
     private boolean doClearHistory = false;
     boolean isCurrentlyLoading;
+    private int pageLoadSpan = -1;
 
     /** The authorization tokens. */
     private Hashtable<String, AuthenticationToken> authenticationTokens = new Hashtable<String, AuthenticationToken>();
 
     public SystemWebViewClient(SystemWebViewEngine parentEngine) {
         this.parentEngine = parentEngine;
+        this.assetCache.setMaxBytes(parentEngine.preferences.getInteger("AssetCacheSize", AssetCache.DEFAULT_MAX_BYTES));
 
         WebViewAssetLoader.Builder assetLoaderBuilder = new WebViewAssetLoader.Builder()
                 .setDomain(parentEngine.preferences.getString("hostname", "localhost").toLowerCase())
@@ -95,19 +102,19 @@ public class SystemWebViewClient extends WebViewClient {
                 if (path.isEmpty()) {
                     path = "index.html";
                 }
+                AssetCache.Entry cached = assetCache.get(path);
+                if (cached != null) {
+                    return createCachedResponse(cached);
+                }
+
                 InputStream is = parentEngine.webView.getContext().getAssets().open("www/" + path, AssetManager.ACCESS_STREAMING);
-                String mimeType = "text/html";
-                String extension = MimeTypeMap.getFileExtensionFromUrl(path);
-                if (extension != null) {
-                    if (path.endsWith(".js") || path.endsWith(".mjs")) {
-                        // Make sure JS files get the proper mimetype to support ES modules
-                        mimeType = "application/javascript";
-                    } else if (path.endsWith(".wasm")) {
-                        mimeType = "application/wasm";
-                    } else {
-                        mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
-                    }
+                String mimeType = getAssetMimeType(path);
+                // For assets available() is the full length, compressed or not
+                int length = is.available();
+                if (assetCache.accepts(length)) {
+                    return createCachedResponse(assetCache.put(path, is, length, mimeType));
                 }
+                assetCache.recordUncacheable();
 
                 return new WebResourceResponse(mimeType, null, is);
             } catch (Exception e) {
@@ -132,6 +139,30 @@ public class SystemWebViewClient extends WebViewClient {
         }
     }
 
+    private static String getAssetMimeType(String path) {
+        String mimeType = "text/html";
+        String extension = MimeTypeMap.getFileExtensionFromUrl(path);
+        if (extension != null) {
+            if (path.endsWith(".js") || path.endsWith(".mjs")) {
+                // Make sure JS files get the proper mimetype to support ES modules
+                mimeType = "application/javascript";
+            } else if (path.endsWith(".wasm")) {
+                mimeType = "application/wasm";
+            } else {
+                mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+            }
+        }
+        return mimeType;
+    }
+
+    private static WebResourceResponse createCachedResponse(AssetCache.Entry entry) {
+        WebResourceResponse response = new WebResourceResponse(entry.mimeType, null, entry.openStream());
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("ETag", entry.etag);
+        response.setResponseHeaders(headers);
+        return response;
+    }
+
     /**
      * Give the host application a chance to take over the control when a new url
      * is about to be loaded in the current WebView.
@@ -206,6 +237,8 @@ public class SystemWebViewClient extends WebViewClient {
     public void onPageStarted(WebView view, String url, Bitmap favicon) {
         super.onPageStarted(view, url, favicon);
         isCurrentlyLoading = true;
+        StartupTimeline.end(pageLoadSpan);
+        pageLoadSpan = StartupTimeline.begin("page load");
         // Flush stale messages & reset plugins.
         parentEngine.bridge.reset();
         parentEngine.client.onPageStarted(url);
@@ -227,6 +260,8 @@ public class SystemWebViewClient extends WebViewClient {
             return;
         }
         isCurrentlyLoading = false;
+        StartupTimeline.end(pageLoadSpan);
+        pageLoadSpan = -1;
 
         /*
          * Because of a timing issue we need to clear this history in onPageFinished as well as
@@ -289,8 +324,8 @@ public class SystemWebViewClient extends WebViewClient {
     @Override
     public void onReceivedSslError(WebView view, SslErrorHandler handler, SslError error) {
 
-        final String packageName = parentEngine.cordova.getActivity().getPackageName();
-        final PackageManager pm = parentEngine.cordova.getActivity().getPackageManager();
+        final String packageName = view.getContext().getPackageName();
+        final PackageManager pm = view.getContext().getPackageManager();
 
         ApplicationInfo appInfo;
         try {
@@ -41,6 +41,7 @@ import org.apache.cordova.CordovaWebView;
 import org.apache.cordova.CordovaWebViewEngine;
 import org.apache.cordova.ICordovaCookieManager;
 import org.apache.cordova.LOG;
+import org.apache.cordova.MainThread;
 import org.apache.cordova.NativeToJsMessageQueue;
 import org.apache.cordova.PluginManager;
 
@@ -118,7 +119,7 @@ public class SystemWebViewEngine implements CordovaWebViewEngine {
             }
             @Override
             public void runOnUiThread(Runnable r) {
-                SystemWebViewEngine.this.cordova.getActivity().runOnUiThread(r);
+                MainThread.run(SystemWebViewEngine.this.cordova, r);
             }
         }));
         nativeToJsMessageQueue.addBridgeMode(new NativeToJsMessageQueue.EvalBridgeMode(this, cordova));
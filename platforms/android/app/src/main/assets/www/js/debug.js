@@ -242,6 +242,14 @@ const Debug = {
         
         // Проверка плагинов
         this.checkPlugins();
+        
+        this.checkAssetCache();
+        
+        this.checkPolicyCache();
+        
+        this.checkPluginStartup();
+        
+        this.checkKeyLatency();
     },
     
     // Проверка разрешений
@@ -281,6 +289,80 @@ const Debug = {
                 this.warn(`Plugin ${plugin}`, 'Not Available');
             }
         });
+    },
+    
+    // Статистика кэша www-ассетов (попадания/промахи)
+    checkAssetCache() {
+        this.info('=== ASSET CACHE ===');
+        if (typeof cordova === 'undefined') {
+            this.warn('Cordova not available');
+            return;
+        }
+        cordova.exec(
+            (stats) => this.info('Asset cache', stats),
+            (error) => this.error('Asset cache stats failed', error),
+            'CoreAndroid', 'getAssetCacheStats', []
+        );
+    },
+    
+    // Статистика кэша решений AllowList-плагинов (запросы/навигация/мост)
+    checkPolicyCache() {
+        this.info('=== POLICY CACHE ===');
+        if (typeof cordova === 'undefined') {
+            this.warn('Cordova not available');
+            return;
+        }
+        cordova.exec(
+            (stats) => this.info('Policy cache', stats),
+            (error) => this.error('Policy cache stats failed', error),
+            'CoreAndroid', 'getPolicyStats', []
+        );
+    },
+    
+    // Время инициализации плагинов при старте (отложенные плагины отмечены deferred)
+    checkPluginStartup() {
+        this.info('=== PLUGIN STARTUP ===');
+        if (typeof cordova === 'undefined') {
+            this.warn('Cordova not available');
+            return;
+        }
+        cordova.exec(
+            (stats) => this.info('Plugin startup', stats),
+            (error) => this.error('Plugin startup stats failed', error),
+            'CoreAndroid', 'getStartupStats', []
+        );
+    },
+    
+    // Задержка касание -> ввод в поле (нативная сетка против клавиатуры в WebView)
+    // и время показа WebView в окне клавиатуры по последним сменам поля ввода
+    checkKeyLatency() {
+        this.info('=== KEY LATENCY ===');
+        if (typeof KeyboardPlugin === 'undefined' || !KeyboardPlugin.getKeyLatency) {
+            this.warn('KeyboardPlugin not available');
+            return;
+        }
+        KeyboardPlugin.getKeyLatency(
+            (latency) => this.info('Key latency', latency),
+            (error) => this.error('Key latency stats failed', error)
+        );
+    },
+    
+    // Трасса запуска в формате Chrome trace: открыть в chrome://tracing или ui.perfetto.dev
+    exportStartupTrace() {
+        return new Promise((resolve, reject) => {
+            cordova.exec(
+                (trace) => {
+                    const json = JSON.stringify(trace);
+                    this.info('Startup trace', json);
+                    resolve(json);
+                },
+                (error) => {
+                    this.error('Startup trace export failed', error);
+                    reject(error);
+                },
+                'CoreAndroid', 'getStartupTrace', []
+            );
+        });
     }
 };
 
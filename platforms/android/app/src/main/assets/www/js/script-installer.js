@@ -18,6 +18,8 @@ const ScriptInstaller = {
                 icon: scriptData.icon || '📜',
                 description: scriptData.description || 'Установлен через веб-интерфейс',
                 code: scriptData.code,
+                trigger: scriptData.trigger,
+                expansion: scriptData.expansion,
                 userCreated: true,
                 installedFrom: 'web',
                 installDate: new Date().toISOString()
@@ -134,6 +136,8 @@ const ScriptInstaller = {
                 icon: script.icon,
                 description: script.description,
                 code: script.code,
+                trigger: script.trigger,
+                expansion: script.expansion,
                 version: '1.0.0',
                 author: 'User',
                 exportDate: new Date().toISOString()
@@ -152,6 +156,105 @@ const ScriptInstaller = {
         }
     },
     
+    // Чтение файла по частям через плагин File (url - entry.toInternalURL()).
+    // onChunk(data, offset) может вернуть Promise: следующая часть
+    // подтверждается только после его завершения, поэтому в мосте
+    // одновременно находится не больше options.window частей.
+    // Без options.encoding части приходят текстом UTF-8, с encoding: null - ArrayBuffer.
+    readFileInChunks(url, onChunk, options = {}) {
+        return new Promise((resolve, reject) => {
+            const readId = 'chunks_' + Date.now() + '_' + Math.random().toString(36).slice(2);
+            const encoding = options.encoding === undefined ? 'UTF-8' : options.encoding;
+            let pending = Promise.resolve();
+            let failed = false;
+            
+            cordova.exec((offset, data, done) => {
+                if (done) {
+                    pending.then(() => resolve(offset), reject);
+                    return;
+                }
+                pending = pending
+                    .then(() => onChunk(data, offset))
+                    .then(() => {
+                        cordova.exec(null, null, 'File', 'ackChunks', [readId, 1]);
+                    })
+                    .catch((e) => {
+                        if (!failed) {
+                            failed = true;
+                            cordova.exec(null, null, 'File', 'abortChunks', [readId]);
+                            reject(e);
+                        }
+                    });
+            }, (error) => {
+                if (!failed) {
+                    failed = true;
+                    reject(error);
+                }
+            }, 'File', 'readChunks', [
+                readId,
+                url,
+                options.start || 0,
+                options.end === undefined ? -1 : options.end,
+                options.chunkSize || 64 * 1024,
+                options.window || 4,
+                encoding
+            ]);
+        });
+    },
+    
+    // Запись нескольких участков файла на месте, без обрезки (url - entry.toInternalURL()).
+    // ranges: [{ position, data }], data - строка (UTF-8) или ArrayBuffer/Uint8Array.
+    // Все участки записываются одним вызовом моста; результат - число записанных байт.
+    writeFileRanges(url, ranges) {
+        const base64 = cordova.require('cordova/base64');
+        const args = ranges.map(({ position, data }) => {
+            if (typeof data === 'string') {
+                return [position, data, false];
+            }
+            const buffer = ArrayBuffer.isView(data)
+                ? data.buffer.slice(data.byteOffset, data.byteOffset + data.byteLength)
+                : data;
+            return [position, base64.fromArrayBuffer(buffer), true];
+        });
+        return new Promise((resolve, reject) => {
+            cordova.exec(resolve, reject, 'File', 'writeRanges', [url, args]);
+        });
+    },
+    
+    // Установка набора скриптов из файла: по одному JSON-скрипту на строку.
+    // Файл читается по частям, скрипты устанавливаются по мере чтения.
+    installPackFromUrl(url) {
+        Debug.info('=== INSTALLING SCRIPT PACK ===', url);
+        let tail = '';
+        let installed = 0;
+        let failed = 0;
+        
+        const installLine = (line) => {
+            if (!line.trim()) {
+                return;
+            }
+            const result = this.installFromFile(line);
+            if (result.success) {
+                installed++;
+            } else {
+                failed++;
+            }
+        };
+        
+        return this.readFileInChunks(url, (text) => {
+            const lines = (tail + text).split('\n');
+            tail = lines.pop();
+            lines.forEach(installLine);
+        }).then(() => {
+            installLine(tail);
+            Debug.info('Script pack installed', { installed, failed });
+            return { success: failed === 0, installed, failed };
+        }).catch((e) => {
+            Debug.error('Failed to install script pack', e);
+            return { success: false, installed, failed, error: String(e && e.message || e) };
+        });
+    },
+    
     // Получение примеров скриптов
     getExampleScripts() {
         return [
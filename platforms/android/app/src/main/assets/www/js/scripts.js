@@ -6,6 +6,7 @@ const ScriptManager = {
     init() {
         this.loadDefaultScripts();
         this.loadUserScripts();
+        this.syncSnippets();
         console.log('ScriptManager инициализирован');
     },
     
@@ -139,6 +140,11 @@ const ScriptManager = {
         if (script) {
             try {
                 console.log('Выполняем скрипт:', script.name);
+                if (!script.code && script.expansion !== undefined) {
+                    // Сниппет без кода: клавиша просто вставляет его текст
+                    KeyboardManager.typeText(script.expansion);
+                    return;
+                }
                 // Выполняем код скрипта в безопасном контексте
                 const func = new Function('KeyboardManager', 'ScriptManager', script.code);
                 func(KeyboardManager, ScriptManager);
@@ -158,6 +164,24 @@ const ScriptManager = {
     saveUserScripts() {
         const userScripts = this.scripts.filter(s => s.userCreated);
         localStorage.setItem('userScripts', JSON.stringify(userScripts));
+        this.syncSnippets();
+    },
+    
+    // Передать триггеры сниппетов в клавиатуру. Там набранный триггер сразу
+    // заменяется текстом, а из таблицы применяется только разница с прежней
+    syncSnippets() {
+        if (typeof KeyboardPlugin === 'undefined') {
+            return;
+        }
+        const table = {};
+        this.scripts.forEach(script => {
+            if (script.trigger) {
+                table[script.trigger] = script.expansion || '';
+            }
+        });
+        KeyboardPlugin.setSnippets(table, null, error => {
+            console.log('Ошибка передачи сниппетов:', error);
+        });
     },
     
     // Создать новый скрипт
@@ -176,6 +200,23 @@ const ScriptManager = {
         return script;
     },
     
+    // Создать сниппет: триггер (например ';sig') при наборе заменяется текстом
+    createSnippet(trigger, expansion, name = trigger) {
+        const script = {
+            id: 'user_' + Date.now(),
+            name: name,
+            icon: '✂️',
+            description: 'Сниппет ' + trigger,
+            trigger: trigger,
+            expansion: expansion,
+            userCreated: true
+        };
+        
+        this.addScript(script);
+        this.saveUserScripts();
+        return script;
+    },
+    
     // Удалить скрипт
     deleteScript(scriptId) {
         const index = this.scripts.findIndex(s => s.id === scriptId);
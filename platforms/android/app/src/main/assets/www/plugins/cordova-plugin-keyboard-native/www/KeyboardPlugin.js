@@ -1,21 +1,92 @@
 cordova.define("cordova-plugin-keyboard-native.KeyboardPlugin", function(require, exports, module) {
 var exec = require('cordova/exec');
 
+// В режиме без подтверждений нажатия уходят без колбэков
+var noAck = false;
+
+function sendKey(op, success, error) {
+    if (noAck) {
+        exec(null, null, 'KeyboardPlugin', 'key', [op]);
+    } else {
+        exec(success, error, 'KeyboardPlugin', 'key', [op]);
+    }
+}
+
 var KeyboardPlugin = {
     
+    // Компактная команда нажатия: 't' + текст, 'b' [+ количество], 'e'
+    key: function(op, success, error) {
+        sendKey(op, success, error);
+    },
+    
     // Ввод текста через InputMethodService
     typeText: function(text, success, error) {
-        exec(success, error, 'KeyboardPlugin', 'typeText', [text]);
+        sendKey('t' + text, success, error);
     },
     
     // Отправка Backspace
     sendBackspace: function(success, error) {
-        exec(success, error, 'KeyboardPlugin', 'sendBackspace', []);
+        sendKey('b', success, error);
     },
     
     // Отправка Enter
     sendEnter: function(success, error) {
-        exec(success, error, 'KeyboardPlugin', 'sendEnter', []);
+        sendKey('e', success, error);
+    },
+    
+    // Включить/выключить режим без подтверждений.
+    // onErrors получает сводку { count, lastError } по ошибкам ввода
+    setNoAck: function(enabled, onErrors, success) {
+        noAck = enabled;
+        if (enabled) {
+            exec(success, onErrors, 'KeyboardPlugin', 'setNoAck', [true]);
+        } else {
+            exec(success, null, 'KeyboardPlugin', 'setNoAck', [false]);
+        }
+    },
+    
+    // Задержка от касания клавиши до ввода в поле ({ native, webView }) и от
+    // показа клавиатуры до видимого WebView ({ keyboardShown }),
+    // у каждого { count, meanMs, p50Ms, p95Ms, maxMs }
+    getKeyLatency: function(success, error) {
+        exec(success, error, 'KeyboardPlugin', 'getKeyLatency', []);
+    },
+    
+    // До count символов перед курсором (по умолчанию 64). Обычно берётся из
+    // локальной копии текста поля без обращения к приложению
+    getContext: function(count, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'getContext', count == null ? [] : [count]);
+    },
+    
+    // Подсказки для слова перед курсором: { word, suggestions }.
+    // Пересчитываются в KeyboardService после каждой правки
+    getSuggestions: function(success, error) {
+        exec(success, error, 'KeyboardPlugin', 'getSuggestions', []);
+    },
+    
+    // До count (по умолчанию 5) слов словаря, начинающихся с prefix, самые частые первыми
+    suggest: function(prefix, count, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'suggest', count == null ? [prefix] : [prefix, count]);
+    },
+    
+    // Частота слова в словаре 0..255, -1 - слова нет
+    lookupWord: function(word, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'lookupWord', [word]);
+    },
+    
+    // Сниппеты: набранный триггер сразу заменяется текстом. table - { триггер: текст },
+    // в success приходит, сколько триггеров добавлено, изменено или удалено
+    setSnippets: function(table, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'setSnippets', [table]);
+    },
+    
+    putSnippet: function(trigger, expansion, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'putSnippet', [trigger, expansion]);
+    },
+    
+    // В success приходит 1, если триггер был, и 0, если нет
+    removeSnippet: function(trigger, success, error) {
+        exec(success, error, 'KeyboardPlugin', 'removeSnippet', [trigger]);
     },
     
     // Открыть настройки клавиатуры
@@ -0,0 +1,280 @@
+package com.scriptable.keyboard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Словарь для подсказок: дерево из DictionaryCompiler, отображённое в память.
+ *
+ * Файл не читается в кучу: mmap из APK, а запрос трогает только узлы на пути
+ * префикса и в лучших поддеревьях. Каждый ребёнок хранит лучший score своего
+ * поддерева, а дети отсортированы по нему, поэтому top-k ищется обходом по
+ * убыванию score: в очереди лежат только лучший ребёнок и следующий брат, и
+ * обход останавливается на k-м слове, не перебирая все продолжения префикса.
+ *
+ * Только чтение абсолютными get, так что один экземпляр можно опрашивать
+ * с любых потоков без блокировок.
+ */
+public final class CompletionDictionary {
+
+    private static final int ROOT = DictionaryCompiler.HEADER_SIZE;
+    private static final int CHILD_SIZE = DictionaryCompiler.CHILD_SIZE;
+
+    private final ByteBuffer buffer;
+    private final int wordCount;
+
+    public CompletionDictionary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < ROOT || buffer.getInt(0) != DictionaryCompiler.MAGIC) {
+            throw new IOException("Not a dictionary file");
+        }
+        this.wordCount = buffer.getInt(4);
+    }
+
+    /**
+     * Отображает кусок файла, например asset, лежащий в APK без сжатия.
+     */
+    public static CompletionDictionary map(FileChannel channel, long position, long size) throws IOException {
+        return new CompletionDictionary(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return score слова 0..255 или -1, если слова нет
+     */
+    public int getScore(CharSequence word) {
+        int node = ROOT;
+        int matched = 0;
+        while (matched < word.length()) {
+            node = findChild(node, word.charAt(matched));
+            if (node < 0) {
+                return -1;
+            }
+            int length = labelLength(node);
+            if (matched + length > word.length() || !labelMatches(node, word, matched, length)) {
+                return -1;
+            }
+            matched += length;
+        }
+        return isWord(node) ? score(node) : -1;
+    }
+
+    /**
+     * До limit слов, начинающихся с prefix, по убыванию score.
+     */
+    public List<String> suggest(CharSequence prefix, int limit) {
+        ArrayList<String> result = new ArrayList<String>(Math.max(0, limit));
+        if (limit <= 0) {
+            return result;
+        }
+        // Спуск по префиксу; он может закончиться посреди label
+        int node = ROOT;
+        int matched = 0;
+        StringBuilder head = new StringBuilder(prefix.length() + 8);
+        while (matched < prefix.length()) {
+            node = findChild(node, prefix.charAt(matched));
+            if (node < 0) {
+                return result;
+            }
+            int length = labelLength(node);
+            int compared = Math.min(length, prefix.length() - matched);
+            if (!labelMatches(node, prefix, matched, compared)) {
+                return result;
+            }
+            appendLabel(head, node);
+            matched += compared;
+        }
+        new Search(node, head.toString()).run(result, limit);
+        return result;
+    }
+
+    /**
+     * Обход поддерева по убыванию score. Кандидат - узел (ключ - лучший score
+     * поддерева) или слово в узле (ключ - его score); при равенстве слово раньше.
+     */
+    private final class Search {
+        private final String head;
+        // Кандидаты-узлы: offset в файле и родитель, чтобы собрать текст только для ответа,
+        // и запись о нём в списке детей родителя, чтобы дойти до следующего брата
+        private int[] nodes = new int[32];
+        private int[] parents = new int[32];
+        private int[] entries = new int[32];
+        private int[] entriesEnd = new int[32];
+        private int count;
+        // Куча: score << 33 | слово << 32 | индекс кандидата
+        private long[] heap = new long[32];
+        private int heapSize;
+
+        Search(int node, String head) {
+            this.head = head;
+            add(node, -1, maxScore(node), -1, -1);
+        }
+
+        void run(List<String> result, int limit) {
+            while (heapSize > 0 && result.size() < limit) {
+                long top = poll();
+                int index = (int) top;
+                int node = nodes[index];
+                if ((top & (1L << 32)) != 0) {
+                    result.add(text(index));
+                    continue;
+                }
+                if (isWord(node)) {
+                    push(((long) score(node) << 33) | (1L << 32) | index);
+                }
+                int children = childCount(node);
+                if (children > 0) {
+                    int first = childrenStart(node);
+                    addEntry(first, first + children * CHILD_SIZE, index);
+                }
+                // Брат не лучше этого узла, его очередь пришла только сейчас
+                int sibling = entries[index] + CHILD_SIZE;
+                if (entries[index] >= 0 && sibling < entriesEnd[index]) {
+                    addEntry(sibling, entriesEnd[index], parents[index]);
+                }
+            }
+        }
+
+        private void addEntry(int entry, int end, int parent) {
+            add(buffer.getInt(entry + 3), parent, buffer.get(entry + 2) & 0xff, entry, end);
+        }
+
+        private void add(int node, int parent, int maxScore, int entry, int end) {
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+                parents = Arrays.copyOf(parents, count * 2);
+                entries = Arrays.copyOf(entries, count * 2);
+                entriesEnd = Arrays.copyOf(entriesEnd, count * 2);
+            }
+            nodes[count] = node;
+            parents[count] = parent;
+            entries[count] = entry;
+            entriesEnd[count] = end;
+            push(((long) maxScore << 33) | count);
+            count++;
+        }
+
+        private String text(int index) {
+            StringBuilder text = new StringBuilder(head);
+            int start = text.length();
+            // Кандидат 0 - узел префикса, его текст уже в head
+            for (int i = index; i > 0; i = parents[i]) {
+                int node = nodes[i];
+                int length = labelLength(node);
+                for (int c = length - 1; c >= 0; c--) {
+                    text.append(buffer.getChar(node + 3 + 2 * c));
+                }
+            }
+            // Метки собраны с конца
+            reverse(text, start);
+            return text.toString();
+        }
+
+        private void push(long value) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        private long poll() {
+            long top = heap[0];
+            long last = heap[--heapSize];
+            int i = 0;
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < heapSize && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (last >= heap[child]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+
+    private static void reverse(StringBuilder text, int start) {
+        for (int i = start, j = text.length() - 1; i < j; i++, j--) {
+            char c = text.charAt(i);
+            text.setCharAt(i, text.charAt(j));
+            text.setCharAt(j, c);
+        }
+    }
+
+    private boolean isWord(int node) {
+        return (buffer.get(node) & DictionaryCompiler.FLAG_WORD) != 0;
+    }
+
+    private int score(int node) {
+        return buffer.get(node + 1) & 0xff;
+    }
+
+    private int labelLength(int node) {
+        return buffer.get(node + 2) & 0xff;
+    }
+
+    private int childCount(int node) {
+        return buffer.getShort(node + 3 + 2 * labelLength(node)) & 0xffff;
+    }
+
+    private int childrenStart(int node) {
+        return node + 5 + 2 * labelLength(node);
+    }
+
+    private int maxScore(int node) {
+        int best = isWord(node) ? score(node) : -1;
+        if (childCount(node) > 0) {
+            best = Math.max(best, buffer.get(childrenStart(node) + 2) & 0xff);
+        }
+        return best;
+    }
+
+    private boolean labelMatches(int node, CharSequence text, int from, int length) {
+        for (int i = 0; i < length; i++) {
+            if (buffer.getChar(node + 3 + 2 * i) != text.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendLabel(StringBuilder text, int node) {
+        int length = labelLength(node);
+        for (int i = 0; i < length; i++) {
+            text.append(buffer.getChar(node + 3 + 2 * i));
+        }
+    }
+
+    // Дети отсортированы по score, не по букве; их не больше размера алфавита
+    private int findChild(int node, char c) {
+        int entry = childrenStart(node);
+        int end = entry + childCount(node) * CHILD_SIZE;
+        for (; entry < end; entry += CHILD_SIZE) {
+            if (buffer.getChar(entry) == c) {
+                return buffer.getInt(entry + 3);
+            }
+        }
+        return -1;
+    }
+}
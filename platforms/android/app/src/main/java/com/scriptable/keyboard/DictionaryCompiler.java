@@ -0,0 +1,229 @@
+package com.scriptable.keyboard;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Собирает файл словаря для CompletionDictionary из списка слов.
+ *
+ * Запускается при сборке (задача compileDictionary в build-extras.gradle) и
+ * из бенчмарка, поэтому не зависит от android.*. Список - строки
+ * "слово частота" (частота необязательна), '#' - комментарий. Слова
+ * приводятся к нижнему регистру, частоты - к шкале 0..255 по логарифму.
+ *
+ * Формат файла (big-endian, как ByteBuffer по умолчанию):
+ *     int magic 0x534b4431, int wordCount, int nodeCount, int reserved,
+ *     узлы префиксного дерева со сжатыми путями в порядке обхода в глубину, начиная с корня:
+ *     { byte flags, byte score, byte labelLength, char[labelLength] label,
+ *       short childCount, childCount x { char first, byte maxScore, int offset } }
+ * label - часть слова на ребре от родителя, maxScore - лучший score в поддереве
+ * ребёнка, offset - от начала файла. Дети отсортированы по убыванию maxScore:
+ * поиск лучших слов смотрит следующего ребёнка, только когда взял предыдущего.
+ */
+public final class DictionaryCompiler {
+
+    static final int MAGIC = 0x534b4431;
+    static final int HEADER_SIZE = 16;
+    static final int FLAG_WORD = 1;
+    static final int CHILD_SIZE = 7;
+    // Длина label хранится в байте; длиннее слов в словаре клавиатуры не бывает
+    static final int MAX_WORD_LENGTH = 48;
+
+    private static final Comparator<Node> BEST_FIRST = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            return a.maxScore != b.maxScore ? b.maxScore - a.maxScore : a.label.charAt(0) - b.label.charAt(0);
+        }
+    };
+
+    private static final class Node {
+        final String label;
+        int score = -1;
+        int maxScore = -1;
+        Node[] children;
+        int offset;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int size() {
+            return 5 + 2 * label.length() + CHILD_SIZE * children.length;
+        }
+    }
+
+    private final String[] words;
+    private final int[] scores;
+    private int nodeCount;
+
+    private DictionaryCompiler(String[] words, int[] scores) {
+        this.words = words;
+        this.scores = scores;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DictionaryCompiler <words.txt> <output.dict>");
+            System.exit(2);
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(args[0]), "UTF-8");
+        TreeMap<String, Long> counts;
+        try {
+            counts = readWordList(reader);
+        } finally {
+            reader.close();
+        }
+        File output = new File(args[1]);
+        File parent = output.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream out = new FileOutputStream(output);
+        try {
+            out.write(compile(counts));
+        } finally {
+            out.close();
+        }
+        System.out.println("Compiled " + counts.size() + " words into " + output.length() + " bytes");
+    }
+
+    /**
+     * Читает список слов; повторы складываются.
+     */
+    public static TreeMap<String, Long> readWordList(Reader reader) throws IOException {
+        TreeMap<String, Long> counts = new TreeMap<String, Long>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            long count = parts.length > 1 ? Long.parseLong(parts[1]) : 1;
+            add(counts, parts[0], count);
+        }
+        return counts;
+    }
+
+    public static void add(TreeMap<String, Long> counts, String word, long count) {
+        word = word.toLowerCase(Locale.ROOT);
+        if (word.isEmpty() || word.length() > MAX_WORD_LENGTH) {
+            return;
+        }
+        Long previous = counts.get(word);
+        counts.put(word, previous != null ? previous + count : count);
+    }
+
+    /**
+     * Собирает файл словаря из отсортированных слов с частотами.
+     */
+    public static byte[] compile(TreeMap<String, Long> counts) {
+        long max = 1;
+        for (long count : counts.values()) {
+            max = Math.max(max, count);
+        }
+        String[] words = new String[counts.size()];
+        int[] scores = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            words[i] = entry.getKey();
+            scores[i] = (int) Math.round(255 * Math.log1p(Math.max(0, entry.getValue())) / Math.log1p(max));
+            i++;
+        }
+        return new DictionaryCompiler(words, scores).write();
+    }
+
+    private byte[] write() {
+        Node root = new Node("");
+        build(root, 0, words.length, 0);
+        int size = layout(root, HEADER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC);
+        out.putInt(words.length);
+        out.putInt(nodeCount);
+        out.putInt(0);
+        writeNode(out, root);
+        return out.array();
+    }
+
+    // Слова [from, to) отсортированы и имеют общий префикс длины depth - это и есть узел
+    private void build(Node node, int from, int to, int depth) {
+        nodeCount++;
+        int maxScore = -1;
+        if (from < to && words[from].length() == depth) {
+            node.score = scores[from];
+            maxScore = node.score;
+            from++;
+        }
+        ArrayList<Node> children = new ArrayList<Node>();
+        int start = from;
+        while (start < to) {
+            char first = words[start].charAt(depth);
+            int end = start + 1;
+            while (end < to && words[end].charAt(depth) == first) {
+                end++;
+            }
+            // У отсортированной группы общий префикс - это общий префикс первого и последнего слова
+            int common = commonPrefix(words[start], words[end - 1]);
+            Node child = new Node(words[start].substring(depth, common));
+            build(child, start, end, common);
+            maxScore = Math.max(maxScore, child.maxScore);
+            children.add(child);
+            start = end;
+        }
+        Collections.sort(children, BEST_FIRST);
+        node.children = children.toArray(new Node[0]);
+        node.maxScore = maxScore;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // Поддерево узла лежит в файле одним куском сразу за ним
+    private static int layout(Node node, int offset) {
+        node.offset = offset;
+        offset += node.size();
+        for (Node child : node.children) {
+            offset = layout(child, offset);
+        }
+        return offset;
+    }
+
+    private static void writeNode(ByteBuffer out, Node node) {
+        out.put((byte) (node.score >= 0 ? FLAG_WORD : 0));
+        out.put((byte) Math.max(0, node.score));
+        out.put((byte) node.label.length());
+        for (int i = 0; i < node.label.length(); i++) {
+            out.putChar(node.label.charAt(i));
+        }
+        out.putShort((short) node.children.length);
+        for (Node child : node.children) {
+            out.putChar(child.label.charAt(0));
+            out.put((byte) child.maxScore);
+            out.putInt(child.offset);
+        }
+        for (Node child : node.children) {
+            writeNode(out, child);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.scriptable.keyboard;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.KeyEvent;
+import android.view.inputmethod.InputConnection;
+
+import java.util.ArrayList;
+
+/**
+ * Очередь операций редактирования для KeyboardService.
+ *
+ * Вызовы typeText/sendBackspace/sendEnter приходят с любых потоков и
+ * не уходят в InputConnection сразу: соседние commit и delete склеиваются,
+ * а вся очередь за кадр применяется одной транзакцией
+ * beginBatchEdit/endBatchEdit на главном потоке.
+ */
+class InputEditQueue implements Choreographer.FrameCallback {
+
+    interface ConnectionProvider {
+        InputConnection getConnection();
+    }
+
+    private static final int OP_COMMIT = 0;
+    private static final int OP_DELETE = 1;
+    private static final int OP_KEY = 2;
+
+    private static final class EditOp {
+        final int type;
+        final StringBuilder text;
+        int count;
+
+        EditOp(int type, int count) {
+            this.type = type;
+            this.count = count;
+            this.text = type == OP_COMMIT ? new StringBuilder() : null;
+        }
+    }
+
+    private final ConnectionProvider provider;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(InputEditQueue.this);
+        }
+    };
+
+    private Runnable onFrameApplied;
+
+    private ArrayList<EditOp> pending = new ArrayList<EditOp>();
+    private ArrayList<EditOp> spare = new ArrayList<EditOp>();
+    private boolean scheduled;
+
+    // Статистика: сколько операций пришло и сколько вызовов ушло в InputConnection
+    private long opsQueued;
+    private long connectionCalls;
+    private long batches;
+
+    InputEditQueue(ConnectionProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * Вызывается после каждой транзакции, применённой по кадру (но не после явного flush()).
+     */
+    void setOnFrameApplied(Runnable onFrameApplied) {
+        this.onFrameApplied = onFrameApplied;
+    }
+
+    public synchronized void commitText(String text) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        opsQueued++;
+        EditOp last = lastOp();
+        if (last == null || last.type != OP_COMMIT) {
+            last = new EditOp(OP_COMMIT, 0);
+            pending.add(last);
+        }
+        last.text.append(text);
+        schedule();
+    }
+
+    public synchronized void deleteBefore(int count) {
+        if (count <= 0) {
+            return;
+        }
+        opsQueued++;
+        EditOp last = lastOp();
+        // Backspace сразу после ещё не отправленного текста просто укорачивает его
+        while (count > 0 && last != null && last.type == OP_COMMIT) {
+            int length = last.text.length();
+            int cut = Character.charCount(last.text.codePointBefore(length));
+            last.text.setLength(length - cut);
+            count--;
+            if (last.text.length() == 0) {
+                pending.remove(pending.size() - 1);
+                last = lastOp();
+            }
+        }
+        if (count > 0) {
+            if (last == null || last.type != OP_DELETE) {
+                last = new EditOp(OP_DELETE, 0);
+                pending.add(last);
+            }
+            last.count += count;
+        }
+        schedule();
+    }
+
+    /**
+     * Заменяет chars символов перед курсором на text (развёрнутый сниппет) в той же транзакции.
+     * В отличие от deleteBefore, считает символы UTF-16, а не нажатия Backspace.
+     */
+    public synchronized void replaceBefore(int chars, String text) {
+        opsQueued++;
+        EditOp last = lastOp();
+        // Заменяемый текст обычно ещё не отправлен, тогда в поле уйдёт только замена
+        while (chars > 0 && last != null && last.type == OP_COMMIT) {
+            int length = last.text.length();
+            int cut = Math.min(chars, length);
+            last.text.setLength(length - cut);
+            chars -= cut;
+            if (cut == length) {
+                pending.remove(pending.size() - 1);
+                last = lastOp();
+            }
+        }
+        if (chars > 0) {
+            if (last == null || last.type != OP_DELETE) {
+                last = new EditOp(OP_DELETE, 0);
+                pending.add(last);
+            }
+            last.count += chars;
+        }
+        if (text.length() > 0) {
+            if (last == null || last.type != OP_COMMIT) {
+                last = new EditOp(OP_COMMIT, 0);
+                pending.add(last);
+            }
+            last.text.append(text);
+        }
+        schedule();
+    }
+
+    public synchronized void sendKey(int keyCode) {
+        opsQueued++;
+        pending.add(new EditOp(OP_KEY, keyCode));
+        schedule();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (flush() && onFrameApplied != null) {
+            onFrameApplied.run();
+        }
+    }
+
+    /**
+     * Применяет все накопленные операции. Должен вызываться на главном потоке.
+     *
+     * @return true, если операции ушли в InputConnection
+     */
+    public boolean flush() {
+        ArrayList<EditOp> ops;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty()) {
+                return false;
+            }
+            ops = pending;
+            pending = spare;
+            spare = ops;
+        }
+
+        InputConnection ic = provider.getConnection();
+        boolean applied = ic != null;
+        if (applied) {
+            // Одиночная правка и так атомарна, скобки транзакции ей не нужны
+            boolean batch = ops.size() > 1 || ops.get(0).type == OP_KEY;
+            long calls = batch ? 2 : 0;
+            if (batch) {
+                ic.beginBatchEdit();
+            }
+            for (int i = 0, n = ops.size(); i < n; i++) {
+                EditOp op = ops.get(i);
+                switch (op.type) {
+                    case OP_COMMIT:
+                        ic.commitText(op.text, 1);
+                        calls++;
+                        break;
+                    case OP_DELETE:
+                        ic.deleteSurroundingText(op.count, 0);
+                        calls++;
+                        break;
+                    case OP_KEY:
+                        ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, op.count));
+                        ic.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, op.count));
+                        calls += 2;
+                        break;
+                }
+            }
+            if (batch) {
+                ic.endBatchEdit();
+            }
+            synchronized (this) {
+                connectionCalls += calls;
+                batches++;
+            }
+        }
+        ops.clear();
+        return applied;
+    }
+
+    /**
+     * Отбрасывает операции, которые ещё не были применены (например, при смене поля ввода).
+     */
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    public synchronized long getOpsQueued() {
+        return opsQueued;
+    }
+
+    public synchronized long getConnectionCalls() {
+        return connectionCalls;
+    }
+
+    public synchronized long getBatches() {
+        return batches;
+    }
+
+    private EditOp lastOp() {
+        int size = pending.size();
+        return size == 0 ? null : pending.get(size - 1);
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            mainHandler.post(scheduleFrame);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.scriptable.keyboard;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Сетка клавиш, нарисованная прямо на Canvas окна IME.
+ *
+ * Заменяет DOM-клавиатуру в WebView для обычного ввода: касание обрабатывается
+ * в том же потоке, что и commit, без WebView, JS и cordova.exec. Все Paint и
+ * прямоугольники клавиш создаются заранее, onDraw и onTouchEvent не выделяют память.
+ */
+class KeyGridView extends View {
+
+    interface OnKeyListener {
+        /**
+         * @param eventNanos Время касания, см. LatencyStats
+         */
+        void onKey(KeyboardLayout.Key key, long eventNanos);
+    }
+
+    // Цвета и размеры повторяют стили createKeyboard/createKey из keyboard.js
+    private static final int BACKGROUND_COLOR = 0xE6000000;
+    private static final int KEY_COLOR = 0x1AFFFFFF;
+    private static final int PRESSED_COLOR = 0x4DFFFFFF;
+    private static final int LABEL_COLOR = 0xFFFFFFFF;
+    private static final float KEY_HEIGHT_DP = 48;
+    private static final float KEY_MARGIN_DP = 2;
+    private static final float PADDING_DP = 10;
+    private static final float CORNER_DP = 5;
+    private static final float LABEL_SP = 16;
+
+    private final KeyboardLayout layout;
+    private final OnKeyListener listener;
+    private final float density;
+
+    private final KeyboardLayout.Key[] keys;
+    private final RectF[] bounds;
+    private final Paint keyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private float labelOffset;
+
+    private int pressed = -1;
+
+    KeyGridView(Context context, KeyboardLayout layout, OnKeyListener listener) {
+        super(context);
+        this.layout = layout;
+        this.listener = listener;
+        this.density = context.getResources().getDisplayMetrics().density;
+
+        int count = 0;
+        for (KeyboardLayout.Key[] row : layout.rows) {
+            count += row.length;
+        }
+        keys = new KeyboardLayout.Key[count];
+        bounds = new RectF[count];
+        int i = 0;
+        for (KeyboardLayout.Key[] row : layout.rows) {
+            for (KeyboardLayout.Key key : row) {
+                keys[i] = key;
+                bounds[i] = new RectF();
+                i++;
+            }
+        }
+
+        labelPaint.setColor(LABEL_COLOR);
+        labelPaint.setTextAlign(Paint.Align.CENTER);
+        labelPaint.setTextSize(LABEL_SP * context.getResources().getDisplayMetrics().scaledDensity);
+        Paint.FontMetrics metrics = labelPaint.getFontMetrics();
+        labelOffset = -(metrics.ascent + metrics.descent) / 2;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = Math.round(layout.rows.length * KEY_HEIGHT_DP * density + 2 * PADDING_DP * density);
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float padding = PADDING_DP * density;
+        float margin = KEY_MARGIN_DP * density;
+        float keyHeight = KEY_HEIGHT_DP * density;
+        // Ширина единичной клавиши - по самому широкому ряду, остальные центрируются (justify-content: center)
+        float maxUnits = 1;
+        for (KeyboardLayout.Key[] row : layout.rows) {
+            maxUnits = Math.max(maxUnits, rowUnits(row));
+        }
+        float unit = (w - 2 * padding) / maxUnits;
+        int i = 0;
+        float top = padding;
+        for (KeyboardLayout.Key[] row : layout.rows) {
+            float left = (w - rowUnits(row) * unit) / 2;
+            for (KeyboardLayout.Key key : row) {
+                float right = left + key.width * unit;
+                bounds[i++].set(left + margin, top + margin, right - margin, top + keyHeight - margin);
+                left = right;
+            }
+            top += keyHeight;
+        }
+    }
+
+    private static float rowUnits(KeyboardLayout.Key[] row) {
+        float units = 0;
+        for (KeyboardLayout.Key key : row) {
+            units += key.width;
+        }
+        return units;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawColor(BACKGROUND_COLOR);
+        float corner = CORNER_DP * density;
+        for (int i = 0; i < keys.length; i++) {
+            KeyboardLayout.Key key = keys[i];
+            RectF rect = bounds[i];
+            keyPaint.setColor(i == pressed ? PRESSED_COLOR : key.color != 0 ? key.color : KEY_COLOR);
+            canvas.drawRoundRect(rect, corner, corner, keyPaint);
+            canvas.drawText(key.text, rect.centerX(), rect.centerY() + labelOffset, labelPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+            case MotionEvent.ACTION_MOVE:
+                // Палец можно довести до соседней клавиши, срабатывает та, над которой его отпустили
+                setPressedKey(keyAt(event.getX(), event.getY()));
+                return true;
+            case MotionEvent.ACTION_UP: {
+                int key = keyAt(event.getX(), event.getY());
+                setPressedKey(-1);
+                if (key >= 0) {
+                    listener.onKey(keys[key], LatencyStats.eventNanos(event.getEventTime()));
+                }
+                return true;
+            }
+            case MotionEvent.ACTION_CANCEL:
+                setPressedKey(-1);
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    private void setPressedKey(int key) {
+        if (key != pressed) {
+            // Перерисовываем только две затронутые клавиши
+            if (pressed >= 0) {
+                invalidateKey(pressed);
+            }
+            if (key >= 0) {
+                invalidateKey(key);
+            }
+            pressed = key;
+        }
+    }
+
+    private void invalidateKey(int key) {
+        RectF rect = bounds[key];
+        invalidate((int) rect.left, (int) rect.top, (int) Math.ceil(rect.right), (int) Math.ceil(rect.bottom));
+    }
+
+    private int keyAt(float x, float y) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i].contains(x, y)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,77 @@
+package com.scriptable.keyboard;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.apache.cordova.CordovaInterface;
+import org.apache.cordova.CordovaPlugin;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * CordovaInterface для WebView, которым владеет KeyboardService.
+ *
+ * Activity нет: getActivity() возвращает null, а то, что требует Activity
+ * (startActivityForResult, запрос разрешений), недоступно и только пишется в лог.
+ */
+class KeyboardCordovaInterface implements CordovaInterface {
+
+    private static final String TAG = "ScriptableKeyboard";
+
+    private final Context context;
+    private final ExecutorService threadPool = Executors.newCachedThreadPool();
+
+    KeyboardCordovaInterface(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void startActivityForResult(CordovaPlugin command, Intent intent, int requestCode) {
+        Log.w(TAG, "startActivityForResult is not available in the keyboard WebView");
+    }
+
+    @Override
+    public void setActivityResultCallback(CordovaPlugin plugin) {
+    }
+
+    @Override
+    public AppCompatActivity getActivity() {
+        return null;
+    }
+
+    @Override
+    public Context getContext() {
+        return context;
+    }
+
+    @Override
+    public Object onMessage(String id, Object data) {
+        return null;
+    }
+
+    @Override
+    public ExecutorService getThreadPool() {
+        return threadPool;
+    }
+
+    @Override
+    public void requestPermission(CordovaPlugin plugin, int requestCode, String permission) {
+        requestPermissions(plugin, requestCode, new String[] { permission });
+    }
+
+    @Override
+    public void requestPermissions(CordovaPlugin plugin, int requestCode, String[] permissions) {
+        Log.w(TAG, "Permissions can only be requested from the app, not the keyboard WebView");
+    }
+
+    @Override
+    public boolean hasPermission(String permission) {
+        return context.checkPermission(permission, Process.myPid(), Process.myUid()) == PackageManager.PERMISSION_GRANTED;
+    }
+}
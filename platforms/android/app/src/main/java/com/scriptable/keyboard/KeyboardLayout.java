@@ -0,0 +1,109 @@
+package com.scriptable.keyboard;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Раскладка клавиатуры из www/keyboard-layout.json.
+ *
+ * Та же модель, что у KeyboardManager.getKeyboardLayout() в www/js/keyboard.js:
+ * массив рядов, клавиша - строка или объект { text, action, value, width, color }.
+ * Файл читается один раз на процесс.
+ */
+final class KeyboardLayout {
+
+    private static final String TAG = "ScriptableKeyboard";
+    static final String ASSET_PATH = "www/keyboard-layout.json";
+
+    static final class Key {
+        final String text;
+        final String action;
+        final String value;
+        final float width;
+        // 0 - цвет клавиши по умолчанию
+        final int color;
+
+        Key(String text, String action, String value, float width, int color) {
+            this.text = text;
+            this.action = action;
+            this.value = value;
+            this.width = width;
+            this.color = color;
+        }
+    }
+
+    private static KeyboardLayout shared;
+
+    final Key[][] rows;
+
+    private KeyboardLayout(Key[][] rows) {
+        this.rows = rows;
+    }
+
+    static synchronized KeyboardLayout get(Context context) {
+        if (shared == null) {
+            shared = load(context);
+        }
+        return shared;
+    }
+
+    private static KeyboardLayout load(Context context) {
+        try {
+            return parse(readAsset(context, ASSET_PATH));
+        } catch (IOException | JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Error loading " + ASSET_PATH, e);
+            return new KeyboardLayout(new Key[0][]);
+        }
+    }
+
+    static KeyboardLayout parse(String json) throws JSONException {
+        JSONArray rowsJson = new JSONArray(json);
+        Key[][] rows = new Key[rowsJson.length()][];
+        for (int r = 0; r < rows.length; r++) {
+            JSONArray rowJson = rowsJson.getJSONArray(r);
+            Key[] row = new Key[rowJson.length()];
+            for (int k = 0; k < row.length; k++) {
+                Object keyJson = rowJson.get(k);
+                if (keyJson instanceof JSONObject) {
+                    JSONObject obj = (JSONObject) keyJson;
+                    String text = obj.optString("text");
+                    String color = obj.optString("color", null);
+                    row[k] = new Key(text,
+                        obj.optString("action", "type"),
+                        obj.optString("value", text),
+                        (float) obj.optDouble("width", 1),
+                        color != null ? Color.parseColor(color) : 0);
+                } else {
+                    String text = keyJson.toString();
+                    row[k] = new Key(text, "type", text, 1, 0);
+                }
+            }
+            rows[r] = row;
+        }
+        return new KeyboardLayout(rows);
+    }
+
+    private static String readAsset(Context context, String path) throws IOException {
+        InputStream in = context.getAssets().open(path);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -2,8 +2,11 @@ package com.scriptable.keyboard;
 
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CallbackContext;
+import org.apache.cordova.MainThread;
+import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import android.content.Intent;
 import android.provider.Settings;
@@ -12,6 +15,10 @@ import android.content.Context;
 import android.net.Uri;
 import android.view.KeyEvent;
 import android.app.Instrumentation;
+import android.os.Handler;
+import android.os.Looper;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
 
@@ -20,41 +27,207 @@ public class KeyboardPlugin extends CordovaPlugin {
     private ExecutorService executor = Executors.newSingleThreadExecutor();
     private static KeyboardService keyboardService;
     
-    @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
-        
-        if (action.equals("typeText")) {
-            String text = args.getString(0);
-            this.typeText(text, callbackContext);
-            return true;
-        }
-        
-        if (action.equals("sendBackspace")) {
-            this.sendBackspace(callbackContext);
-            return true;
+    // Режим без подтверждений: нажатия не отвечают в JS, ошибки копятся
+    // и приходят пачкой в слушатель, зарегистрированный через setNoAck
+    private static final long ERROR_REPORT_DELAY_MS = 250;
+    private static final PluginResult NO_ACK_RESULT = new PluginResult(PluginResult.Status.NO_RESULT);
+    static {
+        NO_ACK_RESULT.setKeepCallback(true);
+    }
+    
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile CallbackContext errorListener;
+    private int pendingErrorCount;
+    private String lastError;
+    private boolean errorReportScheduled;
+    
+    // Таблица действий: строковый switch сравнивает hashCode без аллокаций
+    private static final int ACTION_UNKNOWN = -1;
+    private static final int ACTION_KEY = 0;
+    private static final int ACTION_TYPE_TEXT = 1;
+    private static final int ACTION_SEND_BACKSPACE = 2;
+    private static final int ACTION_SEND_ENTER = 3;
+    private static final int ACTION_OPEN_KEYBOARD_SETTINGS = 4;
+    private static final int ACTION_IS_KEYBOARD_ENABLED = 5;
+    private static final int ACTION_REQUEST_PERMISSIONS = 6;
+    private static final int ACTION_SET_NO_ACK = 7;
+    private static final int ACTION_GET_KEY_LATENCY = 8;
+    private static final int ACTION_GET_CONTEXT = 9;
+    private static final int ACTION_GET_SUGGESTIONS = 10;
+    private static final int ACTION_SUGGEST = 11;
+    private static final int ACTION_LOOKUP_WORD = 12;
+    private static final int ACTION_SET_SNIPPETS = 13;
+    private static final int ACTION_PUT_SNIPPET = 14;
+    private static final int ACTION_REMOVE_SNIPPET = 15;
+    
+    // Сколько символов перед курсором отдаёт getContext без аргумента
+    private static final int DEFAULT_CONTEXT_CHARS = 64;
+    // Сколько подсказок отдаёт suggest без аргумента
+    private static final int DEFAULT_SUGGESTIONS = 5;
+    
+    private static int actionId(String action) {
+        switch (action) {
+            case "key": return ACTION_KEY;
+            case "typeText": return ACTION_TYPE_TEXT;
+            case "sendBackspace": return ACTION_SEND_BACKSPACE;
+            case "sendEnter": return ACTION_SEND_ENTER;
+            case "openKeyboardSettings": return ACTION_OPEN_KEYBOARD_SETTINGS;
+            case "isKeyboardEnabled": return ACTION_IS_KEYBOARD_ENABLED;
+            case "requestPermissions": return ACTION_REQUEST_PERMISSIONS;
+            case "setNoAck": return ACTION_SET_NO_ACK;
+            case "getKeyLatency": return ACTION_GET_KEY_LATENCY;
+            case "getContext": return ACTION_GET_CONTEXT;
+            case "getSuggestions": return ACTION_GET_SUGGESTIONS;
+            case "suggest": return ACTION_SUGGEST;
+            case "lookupWord": return ACTION_LOOKUP_WORD;
+            case "setSnippets": return ACTION_SET_SNIPPETS;
+            case "putSnippet": return ACTION_PUT_SNIPPET;
+            case "removeSnippet": return ACTION_REMOVE_SNIPPET;
+            default: return ACTION_UNKNOWN;
         }
-        
-        if (action.equals("sendEnter")) {
-            this.sendEnter(callbackContext);
-            return true;
+    }
+    
+    @Override
+    public boolean execute(String action, String rawArgs, CallbackContext callbackContext) throws JSONException {
+        // Быстрый путь для нажатий: аргументы разбираются без JSONArray
+        switch (actionId(action)) {
+            case ACTION_KEY: {
+                String op = KeystrokeArgs.singleString(rawArgs);
+                if (op != null) {
+                    return this.executeKey(op, callbackContext);
+                }
+                break;
+            }
+            case ACTION_TYPE_TEXT: {
+                String text = KeystrokeArgs.singleString(rawArgs);
+                if (text != null) {
+                    this.typeText(text, callbackContext);
+                    return true;
+                }
+                break;
+            }
+            case ACTION_SEND_BACKSPACE:
+                if (KeystrokeArgs.isEmpty(rawArgs)) {
+                    this.sendBackspace(1, callbackContext);
+                    return true;
+                }
+                break;
+            case ACTION_SEND_ENTER:
+                if (KeystrokeArgs.isEmpty(rawArgs)) {
+                    this.sendEnter(callbackContext);
+                    return true;
+                }
+                break;
+            case ACTION_UNKNOWN:
+                return false;
         }
+        return super.execute(action, rawArgs, callbackContext);
+    }
+    
+    @Override
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         
-        if (action.equals("openKeyboardSettings")) {
-            this.openKeyboardSettings(callbackContext);
-            return true;
+        switch (actionId(action)) {
+            case ACTION_KEY:
+                return this.executeKey(args.getString(0), callbackContext);
+            
+            case ACTION_TYPE_TEXT:
+                this.typeText(args.getString(0), callbackContext);
+                return true;
+            
+            case ACTION_SEND_BACKSPACE:
+                this.sendBackspace(1, callbackContext);
+                return true;
+            
+            case ACTION_SEND_ENTER:
+                this.sendEnter(callbackContext);
+                return true;
+            
+            case ACTION_OPEN_KEYBOARD_SETTINGS:
+                this.openKeyboardSettings(callbackContext);
+                return true;
+            
+            case ACTION_IS_KEYBOARD_ENABLED:
+                this.isKeyboardEnabled(callbackContext);
+                return true;
+            
+            case ACTION_REQUEST_PERMISSIONS:
+                this.requestPermissions(callbackContext);
+                return true;
+            
+            case ACTION_SET_NO_ACK:
+                this.setNoAck(args.getBoolean(0), callbackContext);
+                return true;
+            
+            case ACTION_GET_KEY_LATENCY: {
+                // Задержка касание -> commit для нативной сетки и для клавиатуры в WebView,
+                // и время от onStartInputView до видимого WebView в окне клавиатуры
+                JSONObject latency = new JSONObject();
+                latency.put("native", LatencyStats.NATIVE_KEY.toJson());
+                latency.put("webView", LatencyStats.WEB_VIEW_KEY.toJson());
+                latency.put("keyboardShown", LatencyStats.KEYBOARD_SHOWN.toJson());
+                callbackContext.success(latency);
+                return true;
+            }
+            
+            case ACTION_GET_CONTEXT:
+                this.getContext(args.optInt(0, DEFAULT_CONTEXT_CHARS), callbackContext);
+                return true;
+            
+            case ACTION_GET_SUGGESTIONS:
+                this.getSuggestions(callbackContext);
+                return true;
+            
+            case ACTION_SUGGEST:
+                this.suggest(args.getString(0), args.optInt(1, DEFAULT_SUGGESTIONS), callbackContext);
+                return true;
+            
+            case ACTION_LOOKUP_WORD:
+                this.lookupWord(args.getString(0), callbackContext);
+                return true;
+            
+            case ACTION_SET_SNIPPETS:
+                this.setSnippets(args.getJSONObject(0), callbackContext);
+                return true;
+            
+            case ACTION_PUT_SNIPPET:
+                this.putSnippet(args.getString(0), args.getString(1), callbackContext);
+                return true;
+            
+            case ACTION_REMOVE_SNIPPET:
+                this.removeSnippet(args.getString(0), callbackContext);
+                return true;
         }
         
-        if (action.equals("isKeyboardEnabled")) {
-            this.isKeyboardEnabled(callbackContext);
+        return false;
+    }
+    
+    // Компактная команда нажатия, формат описан в KeystrokeArgs
+    private boolean executeKey(String op, CallbackContext callbackContext) {
+        if (op.isEmpty()) {
+            fail(callbackContext, "Empty key op");
             return true;
         }
-        
-        if (action.equals("requestPermissions")) {
-            this.requestPermissions(callbackContext);
-            return true;
+        switch (op.charAt(0)) {
+            case KeystrokeArgs.OP_TYPE:
+                this.typeText(op.substring(1), callbackContext);
+                return true;
+            case KeystrokeArgs.OP_BACKSPACE: {
+                int count = KeystrokeArgs.backspaceCount(op);
+                if (count < 0) {
+                    fail(callbackContext, "Invalid backspace op: " + op);
+                } else {
+                    this.sendBackspace(count, callbackContext);
+                }
+                return true;
+            }
+            case KeystrokeArgs.OP_ENTER:
+                this.sendEnter(callbackContext);
+                return true;
+            default:
+                fail(callbackContext, "Unknown key op: " + op.charAt(0));
+                return true;
         }
-        
-        return false;
     }
     
     private void typeText(String text, CallbackContext callbackContext) {
@@ -62,43 +235,45 @@ public class KeyboardPlugin extends CordovaPlugin {
             if (keyboardService != null) {
                 // Используем InputMethodService для прямого ввода
                 keyboardService.typeText(text);
-                callbackContext.success("Text typed via InputMethodService: " + text);
+                ack(callbackContext, "Text typed via InputMethodService: ", text);
             } else {
                 // Fallback - копируем в буфер обмена
                 android.content.ClipboardManager clipboard = (android.content.ClipboardManager) 
-                    cordova.getActivity().getSystemService(android.content.Context.CLIPBOARD_SERVICE);
+                    cordova.getContext().getSystemService(android.content.Context.CLIPBOARD_SERVICE);
                 android.content.ClipData clip = android.content.ClipData.newPlainText("keyboard_text", text);
                 clipboard.setPrimaryClip(clip);
-                callbackContext.success("Text copied to clipboard: " + text);
+                ack(callbackContext, "Text copied to clipboard: ", text);
             }
         } catch (Exception e) {
-            callbackContext.error("Error typing text: " + e.getMessage());
+            fail(callbackContext, "Error typing text: " + e.getMessage());
         }
     }
     
-    private void sendBackspace(CallbackContext callbackContext) {
+    private void sendBackspace(int count, CallbackContext callbackContext) {
         try {
             if (keyboardService != null) {
-                keyboardService.sendBackspace();
-                callbackContext.success("Backspace sent via InputMethodService");
+                keyboardService.sendBackspace(count);
+                ack(callbackContext, "Backspace sent via InputMethodService", null);
             } else {
                 // Fallback через Instrumentation
                 executor.execute(() -> {
                     try {
                         Instrumentation instrumentation = new Instrumentation();
-                        instrumentation.sendKeyDownUpSync(KeyEvent.KEYCODE_DEL);
-                        cordova.getActivity().runOnUiThread(() -> {
-                            callbackContext.success("Backspace sent via Instrumentation");
+                        for (int i = 0; i < count; i++) {
+                            instrumentation.sendKeyDownUpSync(KeyEvent.KEYCODE_DEL);
+                        }
+                        MainThread.run(cordova, () -> {
+                            ack(callbackContext, "Backspace sent via Instrumentation", null);
                         });
                     } catch (Exception e) {
-                        cordova.getActivity().runOnUiThread(() -> {
-                            callbackContext.error("Error sending backspace: " + e.getMessage());
+                        MainThread.run(cordova, () -> {
+                            fail(callbackContext, "Error sending backspace: " + e.getMessage());
                         });
                     }
                 });
             }
         } catch (Exception e) {
-            callbackContext.error("Error sending backspace: " + e.getMessage());
+            fail(callbackContext, "Error sending backspace: " + e.getMessage());
         }
     }
     
@@ -106,25 +281,182 @@ public class KeyboardPlugin extends CordovaPlugin {
         try {
             if (keyboardService != null) {
                 keyboardService.sendEnter();
-                callbackContext.success("Enter sent via InputMethodService");
+                ack(callbackContext, "Enter sent via InputMethodService", null);
             } else {
                 // Fallback через Instrumentation
                 executor.execute(() -> {
                     try {
                         Instrumentation instrumentation = new Instrumentation();
                         instrumentation.sendKeyDownUpSync(KeyEvent.KEYCODE_ENTER);
-                        cordova.getActivity().runOnUiThread(() -> {
-                            callbackContext.success("Enter sent via Instrumentation");
+                        MainThread.run(cordova, () -> {
+                            ack(callbackContext, "Enter sent via Instrumentation", null);
                         });
                     } catch (Exception e) {
-                        cordova.getActivity().runOnUiThread(() -> {
-                            callbackContext.error("Error sending enter: " + e.getMessage());
+                        MainThread.run(cordova, () -> {
+                            fail(callbackContext, "Error sending enter: " + e.getMessage());
                         });
                     }
                 });
             }
         } catch (Exception e) {
-            callbackContext.error("Error sending enter: " + e.getMessage());
+            fail(callbackContext, "Error sending enter: " + e.getMessage());
+        }
+    }
+    
+    private void getContext(int count, CallbackContext callbackContext) {
+        KeyboardService service = requireService(callbackContext);
+        if (service == null) {
+            return;
+        }
+        if (count < 0) {
+            callbackContext.error("Invalid context length: " + count);
+            return;
+        }
+        // Обычно ответ есть в локальной копии текста и уходит сразу, с этого же потока
+        String text = service.getCachedTextBeforeCursor(count);
+        if (text != null) {
+            callbackContext.success(text);
+            return;
+        }
+        // Иначе копию заполняет главный поток, один раз на поле ввода
+        mainHandler.post(() -> callbackContext.success(service.getTextBeforeCursor(count)));
+    }
+    
+    // Подсказки, посчитанные KeyboardService после последней правки
+    private void getSuggestions(CallbackContext callbackContext) throws JSONException {
+        KeyboardService service = requireService(callbackContext);
+        if (service == null) {
+            return;
+        }
+        KeyboardService.Suggestions suggestions = service.getSuggestions();
+        JSONObject result = new JSONObject();
+        result.put("word", suggestions.word);
+        result.put("suggestions", new JSONArray(suggestions.words));
+        callbackContext.success(result);
+    }
+    
+    // Словарь отображён в память и читается без блокировок, отвечаем с потока моста
+    private void suggest(String prefix, int count, CallbackContext callbackContext) {
+        KeyboardService service = requireService(callbackContext);
+        if (service != null) {
+            callbackContext.success(new JSONArray(service.suggest(prefix, Math.max(0, count))));
+        }
+    }
+    
+    private void lookupWord(String word, CallbackContext callbackContext) {
+        KeyboardService service = requireService(callbackContext);
+        if (service != null) {
+            callbackContext.success(service.lookupWord(word));
+        }
+    }
+    
+    // Таблица { триггер: текст } целиком; в автомате меняется только разница с прежней
+    private void setSnippets(JSONObject table, CallbackContext callbackContext) throws JSONException {
+        KeyboardService service = requireService(callbackContext);
+        if (service == null) {
+            return;
+        }
+        HashMap<String, String> snippets = new HashMap<String, String>();
+        Iterator<String> triggers = table.keys();
+        while (triggers.hasNext()) {
+            String trigger = triggers.next();
+            snippets.put(trigger, table.getString(trigger));
+        }
+        callbackContext.success(service.setSnippets(snippets));
+    }
+    
+    private void putSnippet(String trigger, String expansion, CallbackContext callbackContext) {
+        KeyboardService service = requireService(callbackContext);
+        if (service == null) {
+            return;
+        }
+        if (trigger.isEmpty()) {
+            callbackContext.error("Empty snippet trigger");
+            return;
+        }
+        service.putSnippet(trigger, expansion);
+        callbackContext.success();
+    }
+    
+    private void removeSnippet(String trigger, CallbackContext callbackContext) {
+        KeyboardService service = requireService(callbackContext);
+        if (service != null) {
+            callbackContext.success(service.removeSnippet(trigger) ? 1 : 0);
+        }
+    }
+    
+    private KeyboardService requireService(CallbackContext callbackContext) {
+        KeyboardService service = keyboardService;
+        if (service == null) {
+            callbackContext.error("Keyboard service is not running");
+        }
+        return service;
+    }
+    
+    private void setNoAck(boolean enabled, CallbackContext callbackContext) {
+        CallbackContext previous = errorListener;
+        if (enabled) {
+            // Слушатель остаётся открытым и получает сводки ошибок
+            errorListener = callbackContext;
+            callbackContext.sendPluginResult(NO_ACK_RESULT);
+        } else {
+            errorListener = null;
+            callbackContext.success("Keystroke acks enabled");
+        }
+        if (previous != null && previous != callbackContext) {
+            previous.success("Keystroke acks listener replaced");
+        }
+    }
+    
+    // Подтверждение операции ввода; строка собирается только если её ждут в JS
+    private void ack(CallbackContext callbackContext, String message, String detail) {
+        if (errorListener != null) {
+            callbackContext.sendPluginResult(NO_ACK_RESULT);
+        } else {
+            callbackContext.success(detail == null ? message : message + detail);
+        }
+    }
+    
+    private void fail(CallbackContext callbackContext, String message) {
+        if (errorListener == null) {
+            callbackContext.error(message);
+            return;
+        }
+        callbackContext.sendPluginResult(NO_ACK_RESULT);
+        synchronized (this) {
+            pendingErrorCount++;
+            lastError = message;
+            if (errorReportScheduled) {
+                return;
+            }
+            errorReportScheduled = true;
+        }
+        mainHandler.postDelayed(this::flushErrors, ERROR_REPORT_DELAY_MS);
+    }
+    
+    private void flushErrors() {
+        int count;
+        String message;
+        synchronized (this) {
+            count = pendingErrorCount;
+            message = lastError;
+            pendingErrorCount = 0;
+            lastError = null;
+            errorReportScheduled = false;
+        }
+        CallbackContext listener = errorListener;
+        if (listener == null || count == 0) {
+            return;
+        }
+        try {
+            JSONObject report = new JSONObject();
+            report.put("count", count);
+            report.put("lastError", message);
+            PluginResult result = new PluginResult(PluginResult.Status.ERROR, report);
+            result.setKeepCallback(true);
+            listener.sendPluginResult(result);
+        } catch (JSONException e) {
+            listener.error("Error reporting keystroke errors: " + e.getMessage());
         }
     }
     
@@ -132,7 +464,7 @@ public class KeyboardPlugin extends CordovaPlugin {
         try {
             Intent intent = new Intent(Settings.ACTION_INPUT_METHOD_SETTINGS);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            cordova.getActivity().startActivity(intent);
+            cordova.getContext().startActivity(intent);
             callbackContext.success("Keyboard settings opened");
         } catch (Exception e) {
             callbackContext.error("Error opening keyboard settings: " + e.getMessage());
@@ -141,12 +473,12 @@ public class KeyboardPlugin extends CordovaPlugin {
     
     private void isKeyboardEnabled(CallbackContext callbackContext) {
         try {
-            InputMethodManager imm = (InputMethodManager) cordova.getActivity().getSystemService(Context.INPUT_METHOD_SERVICE);
-            String packageName = cordova.getActivity().getPackageName();
+            InputMethodManager imm = (InputMethodManager) cordova.getContext().getSystemService(Context.INPUT_METHOD_SERVICE);
+            String packageName = cordova.getContext().getPackageName();
             
             // Проверяем, включена ли наша клавиатура
             boolean isEnabled = Settings.Secure.getString(
-                cordova.getActivity().getContentResolver(),
+                cordova.getContext().getContentResolver(),
                 Settings.Secure.ENABLED_INPUT_METHODS
             ).contains(packageName);
             
@@ -160,11 +492,11 @@ public class KeyboardPlugin extends CordovaPlugin {
         try {
             // Запрос разрешения на отображение поверх других приложений
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
-                if (!Settings.canDrawOverlays(cordova.getActivity())) {
+                if (!Settings.canDrawOverlays(cordova.getContext())) {
                     Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
-                        Uri.parse("package:" + cordova.getActivity().getPackageName()));
+                        Uri.parse("package:" + cordova.getContext().getPackageName()));
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    cordova.getActivity().startActivity(intent);
+                    cordova.getContext().startActivity(intent);
                 }
             }
             callbackContext.success("Permissions requested");
@@ -1,23 +1,95 @@
 package com.scriptable.keyboard;
 
+import android.content.res.AssetFileDescriptor;
 import android.inputmethodservice.InputMethodService;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.ExtractedText;
+import android.view.inputmethod.ExtractedTextRequest;
 import android.view.inputmethod.InputConnection;
-import android.content.Intent;
 import android.util.Log;
 import android.view.KeyEvent;
+import android.widget.LinearLayout;
+
+import org.apache.cordova.StartupTimeline;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class KeyboardService extends InputMethodService {
     
     private static final String TAG = "ScriptableKeyboard";
     
+    // Операции ввода копятся и применяются одной batch-транзакцией за кадр
+    private final InputEditQueue editQueue = new InputEditQueue(this::getCurrentInputConnection);
+    
+    // Текст вокруг курсора для скриптов, без IPC в приложение на каждый запрос
+    private static final int CONTEXT_CHARS = 1024;
+    // Токен нашего запроса getExtractedText, по нему отличаем свои onUpdateExtractedText
+    private static final int MIRROR_TOKEN = 0x7E47;
+    private final TextMirror textMirror = new TextMirror(CONTEXT_CHARS);
+    // Блокирующие чтения текста из поля: getExtractedText и getTextBeforeCursor
+    private int contextReads;
+    
+    // Подсказки для слова перед курсором из словаря в assets, см. CompletionDictionary
+    private static final String DICTIONARY_ASSET = "dictionary/words.dict";
+    private static final int SUGGESTION_COUNT = 5;
+    private CompletionDictionary dictionary;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean suggestionsScheduled = new AtomicBoolean();
+    private volatile Suggestions suggestions = Suggestions.EMPTY;
+    
+    /**
+     * Слово перед курсором и подсказки для него.
+     */
+    public static final class Suggestions {
+        static final Suggestions EMPTY = new Suggestions("", Collections.<String>emptyList());
+        
+        public final String word;
+        public final List<String> words;
+        
+        Suggestions(String word, List<String> words) {
+            this.word = word;
+            this.words = words;
+        }
+    }
+    
+    // Сниппеты: триггер в конце набранного текста сразу заменяется развёрнутым текстом
+    private final SnippetMatcher snippets = new SnippetMatcher();
+    
+    // Ввод приходит и с потока моста, и с главного (onGridKey). Копия текста, очередь
+    // и сниппеты обновляются под одной блокировкой, иначе замена триггера может
+    // стереть символы, вставленные между ними другим потоком
+    private final Object inputLock = new Object();
+    
+    // WebView приложения живёт вместе с сервисом и встраивается в окно клавиатуры при показе
+    private KeyboardWebViewHost webViewHost;
+    
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "KeyboardService created");
         // Регистрируем себя в плагине
         KeyboardPlugin.setKeyboardService(this);
+        dictionary = openDictionary();
+        // Нажатия из WebView доходят до поля в транзакции очередного кадра
+        editQueue.setOnFrameApplied(() -> LatencyStats.WEB_VIEW_KEY.committed(System.nanoTime()));
+        
+        // WebView создаём заранее, как только главный поток освободится
+        webViewHost = new KeyboardWebViewHost(this);
+        Looper.myQueue().addIdleHandler(() -> {
+            if (webViewHost != null) {
+                webViewHost.prewarm();
+            }
+            return false;
+        });
     }
     
     @Override
@@ -26,86 +98,310 @@ public class KeyboardService extends InputMethodService {
         Log.d(TAG, "KeyboardService destroyed");
         // Отменяем регистрацию
         KeyboardPlugin.clearKeyboardService();
+        webViewHost.destroy();
+        webViewHost = null;
     }
     
     @Override
     public View onCreateInputView() {
         Log.d(TAG, "onCreateInputView called");
+        // Точка отсчёта для time-to-first-keystroke в трассе запуска
+        StartupTimeline.mark("KeyboardService.onCreateInputView");
         
-        // Создаем минимальный view для клавиатуры
-        View inputView = getLayoutInflater().inflate(android.R.layout.simple_list_item_1, null);
-        
-        // Запускаем главное приложение с флагом показа плавающей кнопки
-        try {
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            intent.putExtra("show_floating", true);
-            startActivity(intent);
-            Log.d(TAG, "Main activity launched with floating button flag");
-        } catch (Exception e) {
-            Log.e(TAG, "Error launching main activity", e);
-        }
-        
+        // Над нативной сеткой клавиш - место для WebView со скриптами
+        LinearLayout inputView = new LinearLayout(this);
+        inputView.setOrientation(LinearLayout.VERTICAL);
+        inputView.addView(webViewHost.getContainer());
+        inputView.addView(new KeyGridView(this, KeyboardLayout.get(this), this::onGridKey));
         return inputView;
     }
     
+    // Нажатие на нативной сетке: ввод уходит в поле сразу, в этом же потоке
+    private void onGridKey(KeyboardLayout.Key key, long eventNanos) {
+        switch (key.action) {
+            case "backspace":
+                sendBackspace(1);
+                break;
+            case "enter":
+                sendEnter();
+                break;
+            case "space":
+                typeText(" ");
+                break;
+            case "close":
+                requestHideSelf(0);
+                return;
+            case "script":
+                // Скрипты выполняет ScriptManager в WebView
+                Log.w(TAG, "Script keys are not supported on the native key grid");
+                return;
+            default:
+                typeText(key.value);
+                break;
+        }
+        // Не ждём кадра: заодно досылаются операции, накопленные из WebView
+        if (editQueue.flush()) {
+            LatencyStats.NATIVE_KEY.record(eventNanos, System.nanoTime());
+        }
+    }
+    
     @Override
     public void onStartInput(EditorInfo attribute, boolean restarting) {
         super.onStartInput(attribute, restarting);
         Log.d(TAG, "onStartInput called");
+        textMirror.reset(attribute.initialSelStart, attribute.initialSelEnd);
+        snippets.invalidate();
     }
     
     @Override
     public void onStartInputView(EditorInfo info, boolean restarting) {
         super.onStartInputView(info, restarting);
         Log.d(TAG, "onStartInputView called");
+        // Мог смениться полноэкранный режим, а с ним и то, чей запрос getExtractedText следит за полем
+        textMirror.reset(info.initialSelStart, info.initialSelEnd);
+        snippets.invalidate();
         
-        // Показываем плавающую кнопку при активации клавиатуры
-        try {
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-            intent.putExtra("show_floating", true);
-            startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Error showing floating button", e);
-        }
+        // Вместо запуска MainActivity встраиваем уже загруженный WebView
+        webViewHost.show();
+    }
+    
+    @Override
+    public void onFinishInputView(boolean finishingInput) {
+        webViewHost.hide();
+        super.onFinishInputView(finishingInput);
     }
     
     @Override
     public void onFinishInput() {
+        // Досылаем накопленное в поле, которое ещё подключено
+        editQueue.flush();
+        textMirror.reset(TextMirror.UNKNOWN, TextMirror.UNKNOWN);
+        suggestions = Suggestions.EMPTY;
         super.onFinishInput();
-        Log.d(TAG, "onFinishInput called");
+        Log.d(TAG, "onFinishInput called, edit ops: " + editQueue.getOpsQueued()
+            + ", InputConnection calls: " + editQueue.getConnectionCalls()
+            + ", batches: " + editQueue.getBatches()
+            + ", context hits: " + textMirror.getHits()
+            + ", context reads: " + contextReads
+            + ", snippets: " + snippets.size());
     }
     
-    // Методы для ввода текста (будут вызываться из JavaScript)
+    @Override
+    public void onUpdateSelection(int oldSelStart, int oldSelEnd, int newSelStart, int newSelEnd,
+            int candidatesStart, int candidatesEnd) {
+        super.onUpdateSelection(oldSelStart, oldSelEnd, newSelStart, newSelEnd, candidatesStart, candidatesEnd);
+        if (!textMirror.onUpdateSelection(newSelStart, newSelEnd)) {
+            // Курсор переставили или текст поменяли не мы: набранное раньше уже не перед курсором
+            snippets.invalidate();
+        }
+    }
+    
+    @Override
+    public void onUpdateExtractedText(int token, ExtractedText text) {
+        super.onUpdateExtractedText(token, text);
+        if (token == MIRROR_TOKEN && text != null && text.text != null
+                && !textMirror.onExtractedText(text.text, text.startOffset, text.partialStartOffset,
+                    text.partialEndOffset, text.selectionStart, text.selectionEnd)) {
+            snippets.invalidate();
+        }
+    }
+    
+    // Методы для ввода текста (будут вызываться из JavaScript).
+    // Копия текста обновляется раньше очереди, чтобы ожидание было на месте до ответа поля
     public void typeText(String text) {
-        InputConnection ic = getCurrentInputConnection();
-        if (ic != null) {
-            ic.commitText(text, 1);
-            Log.d(TAG, "Text typed: " + text);
+        synchronized (inputLock) {
+            if (!snippets.isTracking() && snippets.size() > 0) {
+                // Триггер мог начаться до того, как курсор встал сюда; поле ради этого не читаем
+                String before = textMirror.getTextBeforeCursor(snippets.getMaxTriggerLength());
+                snippets.restart(before != null ? before : "");
+            }
+            textMirror.commitText(text);
+            editQueue.commitText(text);
+            SnippetMatcher.Snippet snippet = snippets.feed(text);
+            if (snippet != null) {
+                // Триггер ещё в очереди вместе с последним символом, в поле уйдёт сразу замена
+                textMirror.deleteBefore(snippet.trigger.length());
+                textMirror.commitText(snippet.expansion);
+                editQueue.replaceBefore(snippet.trigger.length(), snippet.expansion);
+                snippets.expanded();
+            }
         }
+        scheduleSuggestions();
     }
     
     public void sendBackspace() {
-        InputConnection ic = getCurrentInputConnection();
-        if (ic != null) {
-            ic.deleteSurroundingText(1, 0);
-            Log.d(TAG, "Backspace sent");
+        sendBackspace(1);
+    }
+    
+    public void sendBackspace(int count) {
+        synchronized (inputLock) {
+            textMirror.deleteBefore(count);
+            editQueue.deleteBefore(count);
+            snippets.deleteBefore(count);
         }
+        scheduleSuggestions();
     }
     
     public void sendEnter() {
+        synchronized (inputLock) {
+            textMirror.sendKey();
+            editQueue.sendKey(KeyEvent.KEYCODE_ENTER);
+            // Триггеры не переходят через перевод строки
+            snippets.restart("");
+        }
+        // Enter заканчивает слово, подсказывать нечего
+        suggestions = Suggestions.EMPTY;
+    }
+    
+    /**
+     * До n символов перед курсором из локальной копии, без обращения к полю.
+     * Можно вызывать с любого потока.
+     *
+     * @return null, если копия не может ответить и нужен getTextBeforeCursor(n)
+     */
+    public String getCachedTextBeforeCursor(int n) {
+        return textMirror.getTextBeforeCursor(n);
+    }
+    
+    /**
+     * До n символов перед курсором; если копия не может ответить, читает поле
+     * и заполняет её заново. Только на главном потоке.
+     */
+    public String getTextBeforeCursor(int n) {
+        String text = textMirror.getTextBeforeCursor(n);
+        if (text != null) {
+            return text;
+        }
+        // Сначала досылаем наши правки, чтобы прочитать поле уже с ними
+        editQueue.flush();
         InputConnection ic = getCurrentInputConnection();
-        if (ic != null) {
-            ic.sendKeyEvent(new android.view.KeyEvent(
-                android.view.KeyEvent.ACTION_DOWN, 
-                android.view.KeyEvent.KEYCODE_ENTER
-            ));
-            ic.sendKeyEvent(new android.view.KeyEvent(
-                android.view.KeyEvent.ACTION_UP, 
-                android.view.KeyEvent.KEYCODE_ENTER
-            ));
-            Log.d(TAG, "Enter sent");
-        }
-    }
-}
\ No newline at end of file
+        if (ic == null) {
+            return "";
+        }
+        if (n <= CONTEXT_CHARS) {
+            seedTextMirror(ic);
+            text = textMirror.getTextBeforeCursor(n);
+            if (text != null) {
+                return text;
+            }
+        }
+        // Больше, чем держит копия
+        contextReads++;
+        CharSequence before = ic.getTextBeforeCursor(n, 0);
+        return before != null ? before.toString() : "";
+    }
+    
+    private void seedTextMirror(InputConnection ic) {
+        ExtractedTextRequest request = new ExtractedTextRequest();
+        request.token = MIRROR_TOKEN;
+        request.hintMaxChars = 2 * CONTEXT_CHARS;
+        // В полноэкранном режиме за полем следит окно извлечения InputMethodService,
+        // а поле помнит только один такой запрос
+        boolean monitor = !isFullscreenMode();
+        contextReads++;
+        ExtractedText extracted = ic.getExtractedText(request, monitor ? InputConnection.GET_EXTRACTED_TEXT_MONITOR : 0);
+        if (extracted != null && extracted.text != null) {
+            textMirror.seed(extracted.text, extracted.startOffset,
+                extracted.startOffset + extracted.selectionStart,
+                extracted.startOffset + extracted.selectionEnd, monitor);
+            return;
+        }
+        // Поле не отдаёт ExtractedText (например, WebView): берём текст перед курсором
+        contextReads++;
+        textMirror.seedBeforeCursor(ic.getTextBeforeCursor(CONTEXT_CHARS, 0));
+    }
+    
+    /**
+     * Заменяет таблицу сниппетов; меняются только отличающиеся записи.
+     *
+     * @return сколько триггеров добавлено, изменено или удалено
+     */
+    public int setSnippets(Map<String, String> table) {
+        return snippets.update(table);
+    }
+    
+    public void putSnippet(String trigger, String expansion) {
+        snippets.put(trigger, expansion);
+    }
+    
+    public boolean removeSnippet(String trigger) {
+        return snippets.remove(trigger);
+    }
+    
+    /**
+     * Подсказки для слова перед курсором, посчитанные после последней правки.
+     */
+    public Suggestions getSuggestions() {
+        return suggestions;
+    }
+    
+    /**
+     * До count слов из словаря, начинающихся с prefix. Можно вызывать с любого потока.
+     */
+    public List<String> suggest(String prefix, int count) {
+        CompletionDictionary dictionary = this.dictionary;
+        if (dictionary == null || prefix.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // В словаре всё в нижнем регистре; заглавную первую букву переносим на подсказки
+        List<String> words = dictionary.suggest(prefix.toLowerCase(Locale.ROOT), count);
+        if (Character.isUpperCase(prefix.charAt(0))) {
+            for (int i = 0; i < words.size(); i++) {
+                String word = words.get(i);
+                words.set(i, word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1));
+            }
+        }
+        return words;
+    }
+    
+    /**
+     * @return частота слова в словаре 0..255 или -1, если слова нет
+     */
+    public int lookupWord(String word) {
+        CompletionDictionary dictionary = this.dictionary;
+        return dictionary != null ? dictionary.getScore(word.toLowerCase(Locale.ROOT)) : -1;
+    }
+    
+    // Пачка правок из JS даёт один пересчёт подсказок, на главном потоке
+    private void scheduleSuggestions() {
+        if (dictionary != null && suggestionsScheduled.compareAndSet(false, true)) {
+            mainHandler.post(this::updateSuggestions);
+        }
+    }
+    
+    private void updateSuggestions() {
+        suggestionsScheduled.set(false);
+        // Из копии текста; в поле идём, только чтобы заполнить её
+        String word = currentWord(getTextBeforeCursor(DictionaryCompiler.MAX_WORD_LENGTH));
+        suggestions = word.isEmpty() ? Suggestions.EMPTY : new Suggestions(word, suggest(word, SUGGESTION_COUNT));
+    }
+    
+    private static String currentWord(String before) {
+        int start = before.length();
+        while (start > 0) {
+            char c = before.charAt(start - 1);
+            if (!Character.isLetter(c) && c != '\'' && c != '-') {
+                break;
+            }
+            start--;
+        }
+        return before.substring(start);
+    }
+    
+    // Словарь лежит в APK без сжатия и отображается в память прямо оттуда
+    private CompletionDictionary openDictionary() {
+        try {
+            AssetFileDescriptor fd = getAssets().openFd(DICTIONARY_ASSET);
+            // Отображение переживает закрытие потока, а поток закрывает и fd
+            FileInputStream in = fd.createInputStream();
+            try {
+                return CompletionDictionary.map(in.getChannel(), fd.getStartOffset(), fd.getLength());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening dictionary " + DICTIONARY_ASSET, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.scriptable.keyboard;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.webkit.WebView;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+
+import org.apache.cordova.ConfigXmlParser;
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CordovaPreferences;
+import org.apache.cordova.CordovaWebViewImpl;
+import org.apache.cordova.PluginEntry;
+import org.apache.cordova.StartupTimeline;
+
+/**
+ * WebView приложения, встроенный в окно клавиатуры и живущий столько же, сколько KeyboardService.
+ *
+ * Раньше каждый onStartInputView запускал MainActivity: старт Activity,
+ * инициализация Cordova, разбор config.xml и загрузка страницы при каждой смене
+ * поля в любом приложении. Теперь CordovaWebViewImpl создаётся один раз, заранее,
+ * пока главный поток простаивает после создания сервиса. Когда клавиатура скрыта,
+ * WebView отцеплен от окна и стоит на паузе (таймеры JS и очередь сообщений
+ * native -> JS), при показе встраивается обратно.
+ */
+class KeyboardWebViewHost {
+
+    private static final String TAG = "ScriptableKeyboard";
+    private static final String SERVICE = "KeyboardWebViewHost";
+    // По этому параметру страница понимает, что открыта внутри клавиатуры (app.js)
+    static final String IME_QUERY = "?ime=1";
+    private static final float HEIGHT_DP = 220;
+
+    private final Context context;
+    private final FrameLayout container;
+    private CordovaWebViewImpl webView;
+    private boolean pageLoaded;
+    private boolean visible;
+    private boolean paused;
+    private long showStartNanos = -1;
+
+    KeyboardWebViewHost(Context context) {
+        this.context = context;
+        // Касания внутри WebView - кандидаты в нажатия клавиш, как в MainActivity
+        this.container = new FrameLayout(context) {
+            @Override
+            public boolean dispatchTouchEvent(MotionEvent ev) {
+                if (ev.getActionMasked() == MotionEvent.ACTION_UP) {
+                    LatencyStats.WEB_VIEW_KEY.touched(LatencyStats.eventNanos(ev.getEventTime()));
+                }
+                return super.dispatchTouchEvent(ev);
+            }
+        };
+        float density = context.getResources().getDisplayMetrics().density;
+        container.setLayoutParams(new LinearLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, Math.round(HEIGHT_DP * density)));
+    }
+
+    /**
+     * Создаёт WebView и начинает загрузку страницы, если это ещё не сделано.
+     */
+    void prewarm() {
+        if (webView != null) {
+            return;
+        }
+        int span = StartupTimeline.begin("KeyboardWebViewHost.prewarm");
+        ConfigXmlParser parser = new ConfigXmlParser();
+        parser.parse(context);
+        CordovaPreferences preferences = parser.getPreferences();
+        webView = new CordovaWebViewImpl(CordovaWebViewImpl.createEngine(context, preferences));
+        webView.init(new KeyboardCordovaInterface(context), parser.getPluginEntries(), preferences);
+        // Скрытая клавиатура не выполняет JS: результаты плагинов копятся в очереди до show()
+        webView.setHoldMessagesWhilePaused(true);
+        webView.getPluginManager().addService(new PluginEntry(SERVICE, new CordovaPlugin() {
+            @Override
+            public Object onMessage(String id, Object data) {
+                if ("onPageFinished".equals(id)) {
+                    onPageFinished();
+                }
+                return null;
+            }
+        }));
+        webView.getView().setLayoutParams(new FrameLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        webView.loadUrlIntoView(parser.getLaunchUrl() + IME_QUERY, true);
+        StartupTimeline.end(span);
+    }
+
+    /**
+     * Контейнер для окна клавиатуры; WebView в нём появляется только на время show().
+     */
+    View getContainer() {
+        ViewGroup parent = (ViewGroup) container.getParent();
+        if (parent != null) {
+            // onCreateInputView вызывается заново, например после поворота экрана
+            parent.removeView(container);
+        }
+        return container;
+    }
+
+    /**
+     * Встраивает WebView в окно клавиатуры и снимает его с паузы.
+     */
+    void show() {
+        if (visible) {
+            return;
+        }
+        visible = true;
+        showStartNanos = System.nanoTime();
+        prewarm();
+        View view = webView.getView();
+        if (view.getParent() == null) {
+            container.addView(view);
+        }
+        resume();
+        measureVisible(view);
+    }
+
+    /**
+     * Отцепляет WebView от окна и ставит на паузу до следующего show().
+     */
+    void hide() {
+        if (!visible) {
+            return;
+        }
+        visible = false;
+        showStartNanos = -1;
+        container.removeView(webView.getView());
+        // Страница ещё грузится - пауза остановила бы загрузку, ставим её в onPageFinished
+        if (pageLoaded) {
+            pause();
+        }
+    }
+
+    void destroy() {
+        if (webView != null) {
+            container.removeView(webView.getView());
+            webView.handleDestroy();
+            webView = null;
+        }
+    }
+
+    private void onPageFinished() {
+        pageLoaded = true;
+        if (!visible) {
+            pause();
+        }
+    }
+
+    private void pause() {
+        if (paused) {
+            return;
+        }
+        paused = true;
+        // pauseTimers действует на все WebView процесса: пока MainActivity на экране, таймеры не трогаем
+        webView.handlePause(MainActivity.isInForeground());
+    }
+
+    private void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        webView.handleResume(false);
+    }
+
+    // Время до первого кадра WebView после onStartInputView
+    private void measureVisible(final View view) {
+        final long start = showStartNanos;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && view instanceof WebView) {
+            ((WebView) view).postVisualStateCallback(start, new WebView.VisualStateCallback() {
+                @Override
+                public void onComplete(long requestId) {
+                    recordVisible(start);
+                }
+            });
+            return;
+        }
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                recordVisible(start);
+                return true;
+            }
+        });
+    }
+
+    private void recordVisible(long start) {
+        // Клавиатуру успели скрыть и показать снова - этот замер уже не актуален
+        if (start != showStartNanos) {
+            return;
+        }
+        long now = System.nanoTime();
+        LatencyStats.KEYBOARD_SHOWN.record(start, now);
+        Log.d(TAG, "Keyboard WebView visible after " + ((now - start) / 1000000) + "ms");
+    }
+}
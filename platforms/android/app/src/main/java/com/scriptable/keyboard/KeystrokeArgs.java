@@ -0,0 +1,173 @@
+package com.scriptable.keyboard;
+
+/**
+ * Разбор аргументов нажатий без построения JSONArray.
+ *
+ * cordova.exec всегда присылает аргументы как JSON-массив. Для клавиш
+ * используются только формы [] и ["строка"], их и разбираем вручную;
+ * для всего остального возвращается null, и плагин идёт обычным путём.
+ *
+ * Компактная команда "key" передаёт одну строку вида:
+ *   "t<текст>"   - ввод текста
+ *   "b[<число>]" - backspace (по умолчанию 1)
+ *   "e"          - enter
+ */
+final class KeystrokeArgs {
+
+    static final char OP_TYPE = 't';
+    static final char OP_BACKSPACE = 'b';
+    static final char OP_ENTER = 'e';
+
+    private KeystrokeArgs() {
+    }
+
+    /**
+     * Проверяет, что rawArgs - пустой массив.
+     */
+    static boolean isEmpty(String rawArgs) {
+        int start = skipSpaces(rawArgs, 0);
+        if (start >= rawArgs.length() || rawArgs.charAt(start) != '[') {
+            return false;
+        }
+        int end = skipSpaces(rawArgs, start + 1);
+        return end < rawArgs.length() && rawArgs.charAt(end) == ']'
+            && skipSpaces(rawArgs, end + 1) == rawArgs.length();
+    }
+
+    /**
+     * Возвращает единственный строковый аргумент из ["..."] или null,
+     * если rawArgs имеет другую форму.
+     */
+    static String singleString(String rawArgs) {
+        int length = rawArgs.length();
+        int i = skipSpaces(rawArgs, 0);
+        if (i >= length || rawArgs.charAt(i) != '[') {
+            return null;
+        }
+        i = skipSpaces(rawArgs, i + 1);
+        if (i >= length || rawArgs.charAt(i) != '"') {
+            return null;
+        }
+        i++;
+
+        // Без escape-последовательностей обходимся одним substring
+        int quote = i;
+        while (quote < length) {
+            char c = rawArgs.charAt(quote);
+            if (c == '"' || c == '\\') {
+                break;
+            }
+            quote++;
+        }
+        if (quote >= length) {
+            return null;
+        }
+        String value;
+        int end;
+        if (rawArgs.charAt(quote) == '"') {
+            value = rawArgs.substring(i, quote);
+            end = quote + 1;
+        } else {
+            StringBuilder sb = new StringBuilder(quote - i + 16);
+            sb.append(rawArgs, i, quote);
+            end = unescape(rawArgs, quote, sb);
+            if (end < 0) {
+                return null;
+            }
+            value = sb.toString();
+        }
+
+        end = skipSpaces(rawArgs, end);
+        if (end >= length || rawArgs.charAt(end) != ']' || skipSpaces(rawArgs, end + 1) != length) {
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Количество удаляемых символов из компактной команды "b[<число>]".
+     */
+    static int backspaceCount(String op) {
+        if (op.length() == 1) {
+            return 1;
+        }
+        int count = 0;
+        for (int i = 1; i < op.length(); i++) {
+            char c = op.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            count = count * 10 + (c - '0');
+            if (count > 0xFFFF) {
+                return -1;
+            }
+        }
+        return count;
+    }
+
+    // Возвращает индекс после закрывающей кавычки или -1 при ошибке
+    private static int unescape(String s, int i, StringBuilder out) {
+        int length = s.length();
+        while (i < length) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                return i;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i >= length) {
+                return -1;
+            }
+            char e = s.charAt(i++);
+            switch (e) {
+                case '"':
+                case '\\':
+                case '/':
+                    out.append(e);
+                    break;
+                case 'b':
+                    out.append('\b');
+                    break;
+                case 'f':
+                    out.append('\f');
+                    break;
+                case 'n':
+                    out.append('\n');
+                    break;
+                case 'r':
+                    out.append('\r');
+                    break;
+                case 't':
+                    out.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 > length) {
+                        return -1;
+                    }
+                    int code = 0;
+                    for (int k = 0; k < 4; k++) {
+                        int digit = Character.digit(s.charAt(i++), 16);
+                        if (digit < 0) {
+                            return -1;
+                        }
+                        code = (code << 4) | digit;
+                    }
+                    out.append((char) code);
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(String s, int i) {
+        int length = s.length();
+        while (i < length && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,87 @@
+package com.scriptable.keyboard;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Задержки клавиатуры: среднее, перцентили и максимум.
+ *
+ * NATIVE_KEY и WEB_VIEW_KEY - от касания клавиши до commit в InputConnection
+ * для нативной сетки KeyGridView и для клавиатуры в WebView (касание в
+ * MainActivity, ввод через KeyboardPlugin). Отсчёт идёт от MotionEvent.getEventTime()
+ * отпускания клавиши (по нему же срабатывает click в WebView): это момент, когда
+ * касание произошло, а не когда его доставили в процесс. uptimeMillis и
+ * System.nanoTime на Android идут по одним и тем же часам CLOCK_MONOTONIC,
+ * поэтому их можно вычитать.
+ *
+ * KEYBOARD_SHOWN - от onStartInputView до первого кадра WebView, встроенного в
+ * окно клавиатуры (KeyboardWebViewHost).
+ */
+final class LatencyStats {
+
+    static final LatencyStats NATIVE_KEY = new LatencyStats();
+    static final LatencyStats WEB_VIEW_KEY = new LatencyStats();
+    static final LatencyStats KEYBOARD_SHOWN = new LatencyStats();
+
+    // Касание без commit дольше этого - не нажатие клавиши (прокрутка, кнопки UI)
+    private static final long MAX_PENDING_NANOS = 1000000000L;
+    private static final int MAX_SAMPLES = 256;
+
+    private final long[] samples = new long[MAX_SAMPLES];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    private long pendingEventNanos = -1;
+
+    private LatencyStats() {
+    }
+
+    static long eventNanos(long eventTimeMillis) {
+        return eventTimeMillis * 1000000L;
+    }
+
+    /**
+     * Запоминает начало события, конец которого придёт позже (например, касание в WebView).
+     */
+    synchronized void touched(long eventNanos) {
+        pendingEventNanos = eventNanos;
+    }
+
+    /**
+     * Закрывает запомненное событие, если оно было недавно.
+     */
+    synchronized void committed(long nowNanos) {
+        if (pendingEventNanos >= 0 && nowNanos - pendingEventNanos < MAX_PENDING_NANOS) {
+            record(pendingEventNanos, nowNanos);
+        }
+        pendingEventNanos = -1;
+    }
+
+    synchronized void record(long eventNanos, long nowNanos) {
+        long latency = nowNanos - eventNanos;
+        samples[(int) (count % MAX_SAMPLES)] = latency;
+        count++;
+        totalNanos += latency;
+        maxNanos = Math.max(maxNanos, latency);
+    }
+
+    /**
+     * Среднее и максимум за всё время, перцентили - по последним MAX_SAMPLES замерам.
+     */
+    synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        if (count == 0) {
+            return json;
+        }
+        long[] recent = Arrays.copyOf(samples, (int) Math.min(count, MAX_SAMPLES));
+        Arrays.sort(recent);
+        json.put("meanMs", totalNanos / (double) count / 1e6);
+        json.put("p50Ms", recent[recent.length / 2] / 1e6);
+        json.put("p95Ms", recent[Math.min(recent.length - 1, recent.length * 95 / 100)] / 1e6);
+        json.put("maxMs", maxNanos / 1e6);
+        return json;
+    }
+}
@@ -20,11 +20,20 @@
 package com.scriptable.keyboard;
 
 import android.os.Bundle;
+import android.view.MotionEvent;
 
 import org.apache.cordova.*;
 
 public class MainActivity extends CordovaActivity
 {
+    // Пока Activity на экране, клавиатура не ставит таймеры WebView на паузу (см. KeyboardWebViewHost)
+    private static volatile boolean inForeground;
+
+    static boolean isInForeground()
+    {
+        return inForeground;
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState)
     {
@@ -39,4 +48,28 @@ public class MainActivity extends CordovaActivity
         // Set by <content src="index.html" /> in config.xml
         loadUrl(launchUrl);
     }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        inForeground = true;
+    }
+
+    @Override
+    protected void onPause()
+    {
+        inForeground = false;
+        super.onPause();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev)
+    {
+        // Отпускание пальца - кандидат в нажатие клавиши WebView-клавиатуры, см. LatencyStats
+        if (ev.getActionMasked() == MotionEvent.ACTION_UP) {
+            LatencyStats.WEB_VIEW_KEY.touched(LatencyStats.eventNanos(ev.getEventTime()));
+        }
+        return super.dispatchTouchEvent(ev);
+    }
 }
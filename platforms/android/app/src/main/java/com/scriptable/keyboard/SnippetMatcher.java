@@ -0,0 +1,417 @@
+package com.scriptable.keyboard;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Поиск триггеров сниппетов (";sig" -> подпись) в набираемом тексте.
+ *
+ * Автомат Ахо-Корасик по всем триггерам: каждый введённый символ - один
+ * переход, в среднем O(1) независимо от числа триггеров, и по состоянию сразу
+ * видно самый длинный триггер, которым кончается текст.
+ *
+ * Триггеры добавляются и удаляются без пересборки автомата. Для этого
+ * хранится обратное дерево суффиксных ссылок: новый узел перецепляет на себя
+ * только тех, для кого он стал самым длинным суффиксом, а новый или удалённый
+ * триггер обновляет ссылки на ближайший триггер только в своём поддереве.
+ * Узлы удалённых триггеров остаются в дереве без сниппета.
+ *
+ * Кроме автомата здесь же состояние для текста перед курсором и история
+ * состояний для Backspace. Все методы synchronized: триггеры меняются с потока
+ * моста, а символы приходят и с него, и с главного потока.
+ */
+public final class SnippetMatcher {
+
+    /**
+     * Триггер и текст, которым он заменяется.
+     */
+    public static final class Snippet {
+        public final String trigger;
+        public final String expansion;
+
+        Snippet(String trigger, String expansion) {
+            this.trigger = trigger;
+            this.expansion = expansion;
+        }
+    }
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    // Столько последних состояний хватает, чтобы откатить Backspace без пересчёта
+    private static final int HISTORY = 64;
+
+    // Узлы дерева триггеров
+    private int nodeCount;
+    private int[] fail = new int[64];
+    // Ближайший узел-триггер на цепочке суффиксных ссылок, не считая самого узла
+    private int[] out = new int[64];
+    private Snippet[] snippets = new Snippet[64];
+    // Обратные суффиксные ссылки: первый ребёнок и двусвязный список братьев
+    private int[] failFirst = new int[64];
+    private int[] failNext = new int[64];
+    private int[] failPrev = new int[64];
+
+    // Переходы: (узел << 16 | символ) -> узел, открытая адресация
+    private long[] edgeKeys = new long[128];
+    private int[] edgeValues = new int[128];
+    private int edgeCount;
+
+    private int[] stack = new int[64];
+
+    private int size;
+    private int maxTriggerLength;
+
+    // Состояние для текста перед курсором; NONE - неизвестно
+    private int state = NONE;
+    private final int[] history = new int[HISTORY];
+    private int historyStart;
+    private int historySize;
+
+    public SnippetMatcher() {
+        clear();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Длина самого длинного триггера, который был добавлен; столько текста
+     * перед курсором нужно, чтобы восстановить состояние.
+     */
+    public synchronized int getMaxTriggerLength() {
+        return maxTriggerLength;
+    }
+
+    public synchronized void clear() {
+        nodeCount = 0;
+        Arrays.fill(edgeKeys, 0);
+        edgeCount = 0;
+        size = 0;
+        maxTriggerLength = 0;
+        newNode();
+        fail[ROOT] = NONE;
+        invalidate();
+    }
+
+    /**
+     * Добавляет триггер или меняет его текст.
+     */
+    public synchronized void put(String trigger, String expansion) {
+        if (trigger.isEmpty()) {
+            return;
+        }
+        int node = ROOT;
+        for (int i = 0; i < trigger.length(); i++) {
+            char c = trigger.charAt(i);
+            int child = getEdge(node, c);
+            node = child != NONE ? child : insert(node, c);
+        }
+        boolean added = snippets[node] == null;
+        snippets[node] = new Snippet(trigger, expansion);
+        if (added) {
+            size++;
+            maxTriggerLength = Math.max(maxTriggerLength, trigger.length());
+            relinkOutputs(node, node);
+            // Новый триггер мог оказаться длиннее суффиксом уже набранного текста
+            invalidate();
+        }
+    }
+
+    /**
+     * @return false, если такого триггера не было
+     */
+    public synchronized boolean remove(String trigger) {
+        int node = find(trigger);
+        if (node == NONE || snippets[node] == null) {
+            return false;
+        }
+        snippets[node] = null;
+        size--;
+        relinkOutputs(node, out[node]);
+        return true;
+    }
+
+    /**
+     * Приводит набор триггеров к table; трогает только записи, которые отличаются.
+     *
+     * @return сколько триггеров добавлено, изменено или удалено
+     */
+    public synchronized int update(Map<String, String> table) {
+        int changed = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            Snippet snippet = snippets[node];
+            if (snippet != null && !table.containsKey(snippet.trigger)) {
+                remove(snippet.trigger);
+                changed++;
+            }
+        }
+        for (Map.Entry<String, String> entry : table.entrySet()) {
+            Snippet snippet = get(entry.getKey());
+            if (!entry.getKey().isEmpty() && (snippet == null || !snippet.expansion.equals(entry.getValue()))) {
+                put(entry.getKey(), entry.getValue());
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    public synchronized Snippet get(String trigger) {
+        int node = find(trigger);
+        return node != NONE ? snippets[node] : null;
+    }
+
+    /**
+     * Есть ли состояние для текста перед курсором. Если нет, его нужно
+     * восстановить через restart().
+     */
+    public synchronized boolean isTracking() {
+        return state != NONE;
+    }
+
+    /**
+     * Текст перед курсором неизвестен: курсор переставили, поле сменилось.
+     */
+    public synchronized void invalidate() {
+        state = NONE;
+        historySize = 0;
+    }
+
+    /**
+     * Восстанавливает состояние по тексту перед курсором (хватит getMaxTriggerLength() символов).
+     */
+    public synchronized void restart(CharSequence before) {
+        state = ROOT;
+        historySize = 0;
+        for (int i = 0; i < before.length(); i++) {
+            state = next(state, before.charAt(i));
+        }
+    }
+
+    /**
+     * Пропускает через автомат набранный текст.
+     *
+     * @return сниппет с самым длинным триггером, которым теперь кончается текст, или null
+     */
+    public synchronized Snippet feed(CharSequence text) {
+        if (state == NONE) {
+            state = ROOT;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            pushHistory(state);
+            state = next(state, text.charAt(i));
+        }
+        if (snippets[state] != null) {
+            return snippets[state];
+        }
+        int match = out[state];
+        return match != NONE ? snippets[match] : null;
+    }
+
+    /**
+     * Текст перед курсором заменён развёрнутым сниппетом: триггеры не ищутся
+     * поперёк этой границы.
+     */
+    public synchronized void expanded() {
+        state = ROOT;
+        historySize = 0;
+    }
+
+    /**
+     * Удалено count символов перед курсором.
+     */
+    public synchronized void deleteBefore(int count) {
+        if (state == NONE || count <= 0) {
+            return;
+        }
+        if (count > historySize) {
+            invalidate();
+            return;
+        }
+        historySize -= count;
+        state = history[(historyStart + historySize) % HISTORY];
+    }
+
+    private void pushHistory(int value) {
+        if (historySize == HISTORY) {
+            historyStart = (historyStart + 1) % HISTORY;
+            historySize--;
+        }
+        history[(historyStart + historySize) % HISTORY] = value;
+        historySize++;
+    }
+
+    private int next(int node, char c) {
+        while (true) {
+            int child = getEdge(node, c);
+            if (child != NONE) {
+                return child;
+            }
+            if (node == ROOT) {
+                return ROOT;
+            }
+            node = fail[node];
+        }
+    }
+
+    private int find(String trigger) {
+        int node = ROOT;
+        for (int i = 0; i < trigger.length() && node != NONE; i++) {
+            node = getEdge(node, trigger.charAt(i));
+        }
+        return trigger.isEmpty() ? NONE : node;
+    }
+
+    // Новый узел parent -c-> u: суффиксная ссылка для него и для тех, чьим суффиксом он стал
+    private int insert(int parent, char c) {
+        int node = newNode();
+        int target = parent == ROOT ? ROOT : next(fail[parent], c);
+        putEdge(parent, c, node);
+        setFail(node, target);
+        out[node] = snippets[target] != null ? target : out[target];
+
+        // Узлы w, у которых parent на цепочке ссылок: их переход по c теперь смотрит на node.
+        // Дальше w, у которого такой переход есть, не идём - там ссылки указывают глубже
+        int top = 0;
+        for (int w = failFirst[parent]; w != NONE; w = failNext[w]) {
+            stack = push(stack, top++, w);
+        }
+        while (top > 0) {
+            int w = stack[--top];
+            int v = getEdge(w, c);
+            if (v != NONE) {
+                // Раньше ссылка v вела на target, node длиннее и тоже суффикс;
+                // ближайший триггер от этого не меняется, node пока не триггер
+                setFail(v, node);
+                continue;
+            }
+            for (int child = failFirst[w]; child != NONE; child = failNext[child]) {
+                stack = push(stack, top++, child);
+            }
+        }
+        return node;
+    }
+
+    // В поддереве ссылок узла: у кого ближайшим триггером был он (или его суффикс), теперь value
+    private void relinkOutputs(int node, int value) {
+        int previous = out[node];
+        int top = 0;
+        for (int w = failFirst[node]; w != NONE; w = failNext[w]) {
+            stack = push(stack, top++, w);
+        }
+        while (top > 0) {
+            int w = stack[--top];
+            if (out[w] != node && out[w] != previous) {
+                continue;
+            }
+            out[w] = value;
+            // За другим триггером его поддерево смотрит уже на него
+            if (snippets[w] != null) {
+                continue;
+            }
+            for (int child = failFirst[w]; child != NONE; child = failNext[child]) {
+                stack = push(stack, top++, child);
+            }
+        }
+    }
+
+    private void setFail(int node, int target) {
+        int previous = fail[node];
+        if (previous != NONE) {
+            // Вынимаем из списка детей прежней ссылки
+            if (failPrev[node] != NONE) {
+                failNext[failPrev[node]] = failNext[node];
+            } else {
+                failFirst[previous] = failNext[node];
+            }
+            if (failNext[node] != NONE) {
+                failPrev[failNext[node]] = failPrev[node];
+            }
+        }
+        fail[node] = target;
+        failPrev[node] = NONE;
+        failNext[node] = failFirst[target];
+        if (failFirst[target] != NONE) {
+            failPrev[failFirst[target]] = node;
+        }
+        failFirst[target] = node;
+    }
+
+    private int newNode() {
+        if (nodeCount == fail.length) {
+            int capacity = nodeCount * 2;
+            fail = Arrays.copyOf(fail, capacity);
+            out = Arrays.copyOf(out, capacity);
+            snippets = Arrays.copyOf(snippets, capacity);
+            failFirst = Arrays.copyOf(failFirst, capacity);
+            failNext = Arrays.copyOf(failNext, capacity);
+            failPrev = Arrays.copyOf(failPrev, capacity);
+        }
+        int node = nodeCount++;
+        fail[node] = NONE;
+        out[node] = NONE;
+        snippets[node] = null;
+        failFirst[node] = NONE;
+        failNext[node] = NONE;
+        failPrev[node] = NONE;
+        return node;
+    }
+
+    private static int[] push(int[] stack, int index, int value) {
+        if (index == stack.length) {
+            stack = Arrays.copyOf(stack, index * 2);
+        }
+        stack[index] = value;
+        return stack;
+    }
+
+    // +1: нулевой ключ означает пустую ячейку
+    private static long edgeKey(int node, char c) {
+        return ((long) node << 16 | c) + 1;
+    }
+
+    private int getEdge(int node, char c) {
+        long key = edgeKey(node, c);
+        int mask = edgeKeys.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = edgeKeys[i];
+            if (k == key) {
+                return edgeValues[i];
+            }
+            if (k == 0) {
+                return NONE;
+            }
+        }
+    }
+
+    private void putEdge(int node, char c, int child) {
+        if (2 * (edgeCount + 1) > edgeKeys.length) {
+            long[] keys = edgeKeys;
+            int[] values = edgeValues;
+            edgeKeys = new long[keys.length * 2];
+            edgeValues = new int[keys.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    insertEdge(keys[i], values[i]);
+                }
+            }
+        }
+        insertEdge(edgeKey(node, c), child);
+        edgeCount++;
+    }
+
+    private void insertEdge(long key, int child) {
+        int mask = edgeKeys.length - 1;
+        int i = hash(key) & mask;
+        while (edgeKeys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        edgeKeys[i] = key;
+        edgeValues[i] = child;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,333 @@
+package com.scriptable.keyboard;
+
+/**
+ * Локальная копия текста поля ввода вокруг курсора.
+ *
+ * Скриптам (автозамена, сниппеты, удаление слова) нужен текст перед курсором, а
+ * getTextBeforeCursor/getExtractedText - блокирующие вызовы в процесс приложения.
+ * Копия заполняется один раз через getExtractedText с GET_EXTRACTED_TEXT_MONITOR,
+ * дальше её обновляют наши собственные правки (сразу, не дожидаясь поля) и отчёты
+ * поля onUpdateExtractedText/onUpdateSelection. Если отчёт поля расходится с тем,
+ * что мы ожидали, копия сбрасывается и заполняется заново при следующем запросе.
+ * Положение курсора после наших правок предсказывается и без текста, поэтому
+ * по отчётам поля видно, какие изменения в поле сделали не мы.
+ *
+ * Класс не зависит от android.*: KeyboardService сам раскладывает ExtractedText
+ * по аргументам, а бенчмарк гоняет копию на обычной JVM. Все offset - абсолютные
+ * позиции в тексте поля, как в onUpdateSelection.
+ */
+public final class TextMirror {
+
+    public static final int UNKNOWN = -1;
+
+    // Сколько наших правок может ждать подтверждения от поля
+    private static final int MAX_EXPECTED = 32;
+
+    // Сколько символов держим с каждой стороны от выделения
+    private final int capacity;
+
+    // Известный кусок текста поля: [textStart, textStart + text.length())
+    private final StringBuilder text = new StringBuilder();
+    private int textStart;
+    private int selStart = UNKNOWN;
+    private int selEnd = UNKNOWN;
+    private boolean valid;
+    // Поле присылает onUpdateExtractedText, то есть о чужих правках текста мы узнаем
+    private boolean monitored;
+
+    // Выделения после наших правок, которые поле ещё не подтвердило через onUpdateSelection
+    private final int[] expected = new int[MAX_EXPECTED * 2];
+    private int expectedCount;
+
+    private long hits;
+    private long misses;
+    private long seeds;
+
+    public TextMirror(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Новое поле ввода: копия пуста, известно только выделение из EditorInfo.
+     */
+    public synchronized void reset(int selStart, int selEnd) {
+        invalidate();
+        this.selStart = Math.min(selStart, selEnd);
+        this.selEnd = Math.max(selStart, selEnd);
+        monitored = false;
+    }
+
+    /**
+     * Заполняет копию из ExtractedText.
+     *
+     * @param extracted Текст поля, начиная с startOffset
+     * @param monitored Запрошен ли текст с GET_EXTRACTED_TEXT_MONITOR
+     */
+    public synchronized void seed(CharSequence extracted, int startOffset, int selStart, int selEnd, boolean monitored) {
+        int start = Math.min(selStart, selEnd);
+        int end = Math.max(selStart, selEnd);
+        if (start < startOffset || end > startOffset + extracted.length()) {
+            invalidate();
+            return;
+        }
+        int from = Math.max(0, start - startOffset - capacity);
+        int to = Math.min(extracted.length(), end - startOffset + capacity);
+        text.setLength(0);
+        text.append(extracted, from, to);
+        textStart = startOffset + from;
+        this.selStart = start;
+        this.selEnd = end;
+        this.monitored = monitored;
+        expectedCount = 0;
+        valid = true;
+        seeds++;
+    }
+
+    /**
+     * Заполняет копию из getTextBeforeCursor, для полей без getExtractedText.
+     * Положение курсора берётся из последнего onUpdateSelection.
+     */
+    public synchronized void seedBeforeCursor(CharSequence before) {
+        if (before == null || selStart == UNKNOWN || before.length() > selStart) {
+            invalidate();
+            return;
+        }
+        text.setLength(0);
+        text.append(before);
+        textStart = selStart - before.length();
+        // Без отчётов о тексте любое неожиданное выделение сбросит копию
+        monitored = false;
+        expectedCount = 0;
+        valid = true;
+        seeds++;
+    }
+
+    public synchronized boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * До n символов перед курсором (перед началом выделения).
+     *
+     * @return null, если копия сброшена или знает меньше n символов перед курсором
+     */
+    public synchronized String getTextBeforeCursor(int n) {
+        if (valid) {
+            int cursor = selStart - textStart;
+            if (n <= cursor || textStart == 0) {
+                hits++;
+                return text.substring(Math.max(0, cursor - n), cursor);
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Наш commitText: текст заменяет выделение, курсор встаёт после него.
+     * Вызывается до того, как правка уйдёт в поле. Без текста копия всё равно
+     * запоминает, где окажется курсор, чтобы узнать отчёт поля об этой правке.
+     */
+    public synchronized void commitText(CharSequence committed) {
+        if (committed.length() == 0 || selStart == UNKNOWN) {
+            return;
+        }
+        if (valid) {
+            int from = selStart - textStart;
+            int end = textEnd();
+            if (selEnd <= end) {
+                text.replace(from, selEnd - textStart, committed.toString());
+            } else {
+                // Конец выделения за пределами копии: после курсора ничего не известно
+                text.setLength(from);
+                text.append(committed);
+            }
+        }
+        selStart += committed.length();
+        selEnd = selStart;
+        expect();
+        trim();
+    }
+
+    /**
+     * Наш deleteSurroundingText(count, 0): удаляет count символов перед выделением.
+     */
+    public synchronized void deleteBefore(int count) {
+        if (count <= 0 || selStart == UNKNOWN) {
+            return;
+        }
+        int n = Math.min(count, selStart);
+        int from = selStart - n;
+        if (valid && from < textStart) {
+            // Удалено больше, чем знает копия: перед курсором больше ничего не известно
+            text.delete(0, selStart - textStart);
+            textStart = from;
+        } else if (valid) {
+            text.delete(from - textStart, selStart - textStart);
+        }
+        selStart -= n;
+        selEnd -= n;
+        expect();
+    }
+
+    /**
+     * Наше нажатие клавиши: что оно сделает с текстом и курсором, решает поле,
+     * поэтому копия сбрасывается до его отчёта.
+     */
+    public synchronized void sendKey() {
+        invalidate();
+        selStart = UNKNOWN;
+        selEnd = UNKNOWN;
+    }
+
+    /**
+     * @return true, если новое выделение объясняется нашими правками; false - курсор
+     *         переставили или текст перед ним поменяли не мы
+     */
+    public synchronized boolean onUpdateSelection(int newSelStart, int newSelEnd) {
+        int start = Math.min(newSelStart, newSelEnd);
+        int end = Math.max(newSelStart, newSelEnd);
+        int i = indexOfExpected(start, end);
+        if (i >= 0) {
+            // Поле дошло до нашей правки i; о более ранних отдельных отчётов уже не будет
+            expectedCount -= i + 1;
+            System.arraycopy(expected, 2 * (i + 1), expected, 0, 2 * expectedCount);
+            return true;
+        }
+        if (expectedCount == 0 && start == selStart && end == selEnd) {
+            return true;
+        }
+        if (valid && expectedCount == 0 && monitored && start >= textStart && end <= textEnd()) {
+            // Курсор переставили в поле; правку текста мы бы уже получили через onUpdateExtractedText
+            selStart = start;
+            selEnd = end;
+            return false;
+        }
+        invalidate();
+        selStart = start;
+        selEnd = end;
+        return false;
+    }
+
+    /**
+     * Отчёт поля по запросу с GET_EXTRACTED_TEXT_MONITOR, поля как в ExtractedText.
+     * partialStartOffset, partialEndOffset и выделение отсчитываются от startOffset.
+     *
+     * @return true, если отчёт о нашей правке; false - текст поменяли не мы
+     */
+    public synchronized boolean onExtractedText(CharSequence reported, int startOffset,
+            int partialStartOffset, int partialEndOffset, int selectionStart, int selectionEnd) {
+        int start = startOffset + Math.min(selectionStart, selectionEnd);
+        int end = startOffset + Math.max(selectionStart, selectionEnd);
+        boolean full = partialStartOffset < 0;
+        int from = full ? startOffset : startOffset + partialStartOffset;
+        boolean ours = indexOfExpected(start, end) >= 0;
+        if (valid && expectedCount > 0) {
+            // Поле ещё не догнало наши правки: отчёт должен сойтись с тем, что мы уже применили
+            if (!ours || !matches(from, reported)) {
+                invalidate();
+                return false;
+            }
+            return true;
+        }
+        if (full) {
+            // Полный текст заполняет копию бесплатно
+            seed(reported, startOffset, start, end, true);
+            return ours;
+        }
+        if (!valid) {
+            return ours;
+        }
+        int to = startOffset + partialEndOffset;
+        int windowEnd = textEnd();
+        if (from >= textStart && to <= windowEnd) {
+            text.replace(from - textStart, to - textStart, reported.toString());
+        } else if (to <= textStart) {
+            textStart += reported.length() - (to - from);
+        } else if (from < windowEnd) {
+            // Правка задевает край копии
+            invalidate();
+            return false;
+        }
+        if (start < textStart || end > textEnd()) {
+            invalidate();
+            return false;
+        }
+        selStart = start;
+        selEnd = end;
+        trim();
+        return false;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getSeeds() {
+        return seeds;
+    }
+
+    private int textEnd() {
+        return textStart + text.length();
+    }
+
+    private void invalidate() {
+        valid = false;
+        text.setLength(0);
+        expectedCount = 0;
+    }
+
+    private void expect() {
+        if (expectedCount == MAX_EXPECTED) {
+            // Поле давно не отвечает, дальше ожидания не проверить
+            invalidate();
+            return;
+        }
+        expected[2 * expectedCount] = selStart;
+        expected[2 * expectedCount + 1] = selEnd;
+        expectedCount++;
+    }
+
+    private int indexOfExpected(int start, int end) {
+        for (int i = 0; i < expectedCount; i++) {
+            if (expected[2 * i] == start && expected[2 * i + 1] == end) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int from, CharSequence reported) {
+        int offset = from - textStart;
+        if (offset < 0 || offset + reported.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < reported.length(); i++) {
+            if (text.charAt(offset + i) != reported.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Копия не растёт бесконечно: лишнее далеко от курсора отрезается
+    private void trim() {
+        if (!valid) {
+            return;
+        }
+        int before = selStart - textStart;
+        if (before > 2 * capacity) {
+            int cut = before - capacity;
+            text.delete(0, cut);
+            textStart += cut;
+        }
+        int after = textEnd() - selEnd;
+        if (after > 2 * capacity) {
+            text.setLength(text.length() - (after - capacity));
+        }
+    }
+}
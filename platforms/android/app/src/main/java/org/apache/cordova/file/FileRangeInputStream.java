@@ -0,0 +1,170 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package org.apache.cordova.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the byte range [start, end) of a local file without streaming through the bytes before it.
+ *
+ * Reads start at the requested offset, so a range at the tail of a large file costs
+ * the same as one at the head and nothing before start is ever touched. Large ranges
+ * are memory-mapped one window at a time; small ranges are read after a single seek,
+ * since setting up a mapping would cost more than it saves.
+ */
+public class FileRangeInputStream extends InputStream {
+    /** Ranges at least this long are memory-mapped. */
+    public static final long MAP_THRESHOLD = 1024 * 1024;
+    /** Largest region mapped at once, to bound address space use on huge files. */
+    static final int MAP_WINDOW = 16 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean mapped;
+    private final long end;
+    // Next file offset to read, or to map in mapped mode
+    private long position;
+    private boolean seekPending = true;
+    private ByteBuffer window;
+    private byte[] single;
+
+    /**
+     * Opens the range [start, end) of the file, choosing the read mode by range length.
+     * A negative end means the end of the file.
+     */
+    public static FileRangeInputStream open(File file, long start, long end) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            return new FileRangeInputStream(raf, start, end, end - start >= MAP_THRESHOLD);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps an open file. The stream takes ownership of it and closes it on {@link #close()}.
+     */
+    public FileRangeInputStream(RandomAccessFile file, long start, long end, boolean mapped) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.mapped = mapped;
+        this.position = Math.max(0, start);
+        this.end = Math.max(this.position, end);
+    }
+
+    /** The number of bytes in the range that have not been read yet. */
+    public long remaining() {
+        long pending = end - position;
+        return window == null ? pending : pending + window.remaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (single == null) {
+            single = new byte[1];
+        }
+        return read(single, 0, 1) == 1 ? single[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+        if (byteCount == 0) {
+            return 0;
+        }
+        return mapped ? readMapped(buffer, byteOffset, byteCount) : readSeeked(buffer, byteOffset, byteCount);
+    }
+
+    private int readSeeked(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+        long left = end - position;
+        if (left <= 0) {
+            return -1;
+        }
+        // Seek once and then read sequentially: RandomAccessFile reads straight into the
+        // caller's array, while a channel read of a heap buffer goes through a direct copy
+        if (seekPending) {
+            file.seek(position);
+            seekPending = false;
+        }
+        int numBytesRead = file.read(buffer, byteOffset, (int) Math.min(byteCount, left));
+        if (numBytesRead < 0) {
+            // The file shrank under us
+            position = end;
+            return -1;
+        }
+        position += numBytesRead;
+        return numBytesRead;
+    }
+
+    private int readMapped(byte[] buffer, int byteOffset, int byteCount) throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            long left = end - position;
+            if (left <= 0) {
+                window = null;
+                return -1;
+            }
+            int size = (int) Math.min(MAP_WINDOW, left);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+        }
+        int count = Math.min(byteCount, window.remaining());
+        window.get(buffer, byteOffset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long byteCount) {
+        if (byteCount <= 0) {
+            return 0;
+        }
+        long skipped = 0;
+        if (window != null) {
+            int inWindow = (int) Math.min(byteCount, window.remaining());
+            window.position(window.position() + inWindow);
+            skipped = inWindow;
+        }
+        long more = Math.min(byteCount - skipped, end - position);
+        if (more > 0) {
+            position += more;
+            seekPending = true;
+        }
+        return skipped + more;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(remaining(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Mapped windows are released by the GC; there is no portable way to unmap them earlier
+        window = null;
+        file.close();
+    }
+}
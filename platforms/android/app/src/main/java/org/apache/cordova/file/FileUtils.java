@@ -27,7 +27,6 @@ import android.os.Build;
 import android.os.Environment;
 import android.util.Base64;
 import android.util.Log;
-import android.webkit.MimeTypeMap;
 import android.webkit.WebResourceResponse;
 
 import androidx.webkit.WebViewAssetLoader;
@@ -52,7 +51,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -84,6 +89,7 @@ public class FileUtils extends CordovaPlugin {
     public static final int ACTION_WRITE = 1;
     public static final int ACTION_GET_DIRECTORY = 2;
     public static final int ACTION_READ_ENTRIES = 3;
+    public static final int ACTION_WRITE_RANGES = 4;
 
     public static final int WRITE = 3;
     public static final int READ = 4;
@@ -93,6 +99,13 @@ public class FileUtils extends CordovaPlugin {
     private boolean configured = false;
 
     private PendingRequests pendingRequests;
+    private ChunkedReads chunkedReads;
+
+    // Defaults and limits for readChunks
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int DEFAULT_CHUNK_WINDOW = 4;
+    private static final int MAX_CHUNK_WINDOW = 64;
 
     // This field exists only to support getEntry, below, which has been deprecated
     private static FileUtils filePlugin;
@@ -101,6 +114,20 @@ public class FileUtils extends CordovaPlugin {
         void run(JSONArray args) throws Exception;
     }
 
+    /**
+     * ByteArrayOutputStream whose buffer can be handed to a PluginResult without
+     * the extra copy made by toByteArray().
+     */
+    private static class ReadBuffer extends ByteArrayOutputStream {
+        ReadBuffer(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
     private ArrayList<Filesystem> filesystems;
 
     public void registerFilesystem(Filesystem fs) {
@@ -118,7 +145,7 @@ public class FileUtils extends CordovaPlugin {
         return null;
     }
 
-    protected String[] getExtraFileSystemsPreference(Activity activity) {
+    protected String[] getExtraFileSystemsPreference(Context context) {
         String fileSystemsStr = preferences.getString("androidextrafilesystems", "files,files-external,documents,sdcard,cache,cache-external,assets,root");
         return fileSystemsStr.split(",");
     }
@@ -145,8 +172,8 @@ public class FileUtils extends CordovaPlugin {
         }
     }
 
-    protected HashMap<String, String> getAvailableFileSystems(Activity activity) {
-        Context context = activity.getApplicationContext();
+    protected HashMap<String, String> getAvailableFileSystems(Context context) {
+        context = context.getApplicationContext();
         HashMap<String, String> availableFileSystems = new HashMap<String, String>();
 
         availableFileSystems.put("files", context.getFilesDir().getAbsolutePath());
@@ -171,18 +198,20 @@ public class FileUtils extends CordovaPlugin {
         super.initialize(cordova, webView);
         this.filesystems = new ArrayList<Filesystem>();
         this.pendingRequests = new PendingRequests();
+        this.chunkedReads = new ChunkedReads(cordova.getThreadPool());
 
         String tempRoot = null;
         String persistentRoot = null;
 
-        Activity activity = cordova.getActivity();
-        String packageName = activity.getPackageName();
+        // Not getActivity(): the plugin also runs in WebViews hosted without one
+        Context context = cordova.getContext();
+        String packageName = context.getPackageName();
 
         String location = preferences.getString("androidpersistentfilelocation", "internal");
 
-        tempRoot = activity.getCacheDir().getAbsolutePath();
+        tempRoot = context.getCacheDir().getAbsolutePath();
         if ("internal".equalsIgnoreCase(location)) {
-            persistentRoot = activity.getFilesDir().getAbsolutePath() + "/files/";
+            persistentRoot = context.getFilesDir().getAbsolutePath() + "/files/";
             this.configured = true;
         } else if ("compatibility".equalsIgnoreCase(location)) {
             /*
@@ -218,7 +247,7 @@ public class FileUtils extends CordovaPlugin {
             this.registerFilesystem(new ContentFilesystem(webView.getContext(), webView.getResourceApi(), preferences));
             this.registerFilesystem(new AssetFilesystem(webView.getContext().getAssets(), webView.getResourceApi(), preferences));
 
-            registerExtraFileSystems(getExtraFileSystemsPreference(activity), getAvailableFileSystems(activity));
+            registerExtraFileSystems(getExtraFileSystemsPreference(context), getAvailableFileSystems(context));
 
             // Initialize static plugin reference for deprecated getEntry method
             if (filePlugin == null) {
@@ -226,7 +255,10 @@ public class FileUtils extends CordovaPlugin {
             }
         } else {
             LOG.e(LOG_TAG, "File plugin configuration error: Please set AndroidPersistentFileLocation in config.xml to one of \"internal\" (for new applications) or \"compatibility\" (for compatibility with previous versions)");
-            activity.finish();
+            Activity activity = cordova.getActivity();
+            if (activity != null) {
+                activity.finish();
+            }
         }
     }
 
@@ -340,6 +372,36 @@ public class FileUtils extends CordovaPlugin {
                     readFileAs(fname, start, end, callbackContext, null, PluginResult.MESSAGE_TYPE_BINARYSTRING);
                 }
             }, rawArgs, callbackContext);
+        } else if (action.equals("readChunks")) {
+            threadhelper(new FileOp() {
+                public void run(JSONArray args) throws JSONException, MalformedURLException {
+                    String readId = args.getString(0);
+                    String fname = args.getString(1);
+                    long start = args.getLong(2);
+                    long end = args.getLong(3);
+                    int chunkSize = args.optInt(4, DEFAULT_CHUNK_SIZE);
+                    int window = args.optInt(5, DEFAULT_CHUNK_WINDOW);
+                    String encoding = args.isNull(6) ? null : args.getString(6);
+                    readFileChunks(readId, fname, start, end, chunkSize, window, encoding, callbackContext);
+                }
+            }, rawArgs, callbackContext);
+        } else if (action.equals("ackChunks")) {
+            // Called once per processed chunk, so handled inline rather than on the thread pool.
+            // JavaScript passes no callbacks, so a successful ack sends nothing back over the bridge.
+            try {
+                JSONArray args = new JSONArray(rawArgs);
+                chunkedReads.ack(args.getString(0), args.getInt(1));
+            } catch (JSONException e) {
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.JSON_EXCEPTION));
+            }
+        } else if (action.equals("abortChunks")) {
+            try {
+                JSONArray args = new JSONArray(rawArgs);
+                chunkedReads.abort(args.getString(0));
+                callbackContext.success();
+            } catch (JSONException e) {
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.JSON_EXCEPTION));
+            }
         } else if (action.equals("write")) {
             threadhelper(new FileOp() {
                 public void run(JSONArray args) throws JSONException, FileNotFoundException, IOException, NoModificationAllowedException {
@@ -358,6 +420,20 @@ public class FileUtils extends CordovaPlugin {
 
                 }
             }, rawArgs, callbackContext);
+        } else if (action.equals("writeRanges")) {
+            threadhelper(new FileOp() {
+                public void run(JSONArray args) throws JSONException, FileNotFoundException, IOException, NoModificationAllowedException, InvalidModificationException {
+                    String fname = args.getString(0);
+                    String nativeURL = resolveLocalFileSystemURI(fname).getString("nativeURL");
+
+                    if (needPermission(nativeURL, WRITE)) {
+                        getWritePermission(rawArgs, ACTION_WRITE_RANGES, callbackContext);
+                    } else {
+                        long written = writeRanges(fname, args.getJSONArray(1));
+                        callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.OK, written));
+                    }
+                }
+            }, rawArgs, callbackContext);
         } else if (action.equals("truncate")) {
             threadhelper(new FileOp() {
                 public void run(JSONArray args) throws JSONException, FileNotFoundException, IOException, NoModificationAllowedException {
@@ -533,6 +609,14 @@ public class FileUtils extends CordovaPlugin {
         return true;
     }
 
+    /**
+     * Stops chunked reads whose page has gone away.
+     */
+    @Override
+    public void onReset() {
+        chunkedReads.abortAll();
+    }
+
     private void getReadPermission(String rawArgs, int action, CallbackContext callbackContext) {
         int requestCode = pendingRequests.createRequest(rawArgs, action, callbackContext);
         if (android.os.Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
@@ -993,7 +1077,7 @@ public class FileUtils extends CordovaPlugin {
     }
 
     private JSONObject requestAllPaths() throws JSONException {
-        Context context = cordova.getActivity();
+        Context context = cordova.getContext();
         JSONObject ret = new JSONObject();
         ret.put("applicationDirectory", "file:///android_asset/");
         ret.put("applicationStorageDirectory", toDirUrl(context.getFilesDir().getParentFile()));
@@ -1073,7 +1157,12 @@ public class FileUtils extends CordovaPlugin {
             fs.readFileAtURL(inputURL, start, end, new Filesystem.ReadFileCallback() {
                 public void handleData(InputStream inputStream, String contentType) {
                     try {
-                        ByteArrayOutputStream os = new ByteArrayOutputStream();
+                        // Size the buffer for the requested range up front to avoid regrowing it.
+                        // end comes from JavaScript, so never trust it beyond what the stream
+                        // reports is left: for files and assets available() is the rest of the range.
+                        long rangeLength = Math.min((long) end - start, inputStream.available());
+                        int initialSize = rangeLength > 0 && rangeLength < Integer.MAX_VALUE - 8 ? (int) rangeLength : 8192;
+                        ReadBuffer os = new ReadBuffer(initialSize);
                         final int BUFFER_SIZE = 8192;
                         byte[] buffer = new byte[BUFFER_SIZE];
 
@@ -1092,10 +1181,11 @@ public class FileUtils extends CordovaPlugin {
                                 result = new PluginResult(PluginResult.Status.OK, os.toString(encoding));
                                 break;
                             case PluginResult.MESSAGE_TYPE_ARRAYBUFFER:
-                                result = new PluginResult(PluginResult.Status.OK, os.toByteArray());
+                                // Base64 encoding happens lazily, directly into the bridge buffer.
+                                result = new PluginResult(PluginResult.Status.OK, os.buffer(), 0, os.size(), false);
                                 break;
                             case PluginResult.MESSAGE_TYPE_BINARYSTRING:
-                                result = new PluginResult(PluginResult.Status.OK, os.toByteArray(), true);
+                                result = new PluginResult(PluginResult.Status.OK, os.buffer(), 0, os.size(), true);
                                 break;
                             default: // Base64.
                                 byte[] base64 = Base64.encode(os.toByteArray(), Base64.NO_WRAP);
@@ -1125,6 +1215,183 @@ public class FileUtils extends CordovaPlugin {
     }
 
 
+    /**
+     * Read the contents of a file as a sequence of chunks.
+     * Each chunk is sent as a kept-callback multipart result [offset, data, false]; the read
+     * ends with [totalLength, empty data, true]. At most window chunks may be outstanding:
+     * JavaScript acknowledges processed chunks with ackChunks(readId, count) and may stop
+     * the read with abortChunks(readId).
+     *
+     * @param readId          Identifier chosen by JavaScript for this read.
+     * @param start           Start position in the file.
+     * @param end             End position to stop at (exclusive).
+     * @param chunkSize       Chunk size in bytes, or in characters when reading text.
+     * @param window          Maximum number of chunks sent but not yet acknowledged.
+     * @param encoding        Text encoding, or null to read ArrayBuffer chunks.
+     * @param callbackContext The context through which to send the chunks.
+     */
+    public void readFileChunks(String readId, final String srcURLstr, final long start, final long end, int chunkSize, int window,
+                               final String encoding, final CallbackContext callbackContext) throws MalformedURLException {
+        // Text chunks need room for a surrogate pair, or a chunk could never make progress
+        int size = Math.max(encoding == null ? 1 : 2, Math.min(chunkSize, MAX_CHUNK_SIZE));
+        LocalFilesystemURL inputURL;
+        try {
+            inputURL = LocalFilesystemURL.parse(srcURLstr);
+        } catch (IllegalArgumentException e) {
+            MalformedURLException mue = new MalformedURLException("Unrecognized filesystem URL");
+            mue.initCause(e);
+            throw mue;
+        }
+        Filesystem fs = this.filesystemForURL(inputURL);
+        if (fs == null) {
+            throw new MalformedURLException("No installed handlers for this URL");
+        }
+        int clampedWindow = Math.max(1, Math.min(window, MAX_CHUNK_WINDOW));
+        chunkedReads.start(readId, clampedWindow,
+                new ChunkSender(fs, inputURL, start, end, size, clampedWindow, encoding, callbackContext));
+    }
+
+    /**
+     * Sends the chunks of one chunked read. Every run reopens the file where the
+     * previous run stopped and sends chunks until the window is full.
+     */
+    private static class ChunkSender implements ChunkedReads.Sender {
+        private final Filesystem fs;
+        private final LocalFilesystemURL inputURL;
+        private final long start;
+        private final long end;
+        private final int chunkSize;
+        private final String encoding;
+        private final CallbackContext callbackContext;
+        // A buffer is only reused once its chunk has been acknowledged, so window buffers suffice.
+        private final byte[][] buffers;
+        private int chunk;
+        // Bytes of the file consumed so far, and the offset reported to JavaScript
+        // (bytes, or characters when reading text)
+        private long position;
+        private long offset;
+
+        ChunkSender(Filesystem fs, LocalFilesystemURL inputURL, long start, long end, int chunkSize, int window,
+                    String encoding, CallbackContext callbackContext) {
+            this.fs = fs;
+            this.inputURL = inputURL;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+            this.encoding = encoding;
+            this.callbackContext = callbackContext;
+            this.buffers = encoding == null ? new byte[window][] : null;
+        }
+
+        @Override
+        public void sendChunks(final ChunkedReads.Read read) {
+            // Claim the first slot before opening the file, so a full window costs no I/O
+            if (!read.takeSlot()) {
+                return;
+            }
+            try {
+                fs.readFileAtURL(inputURL, start + position, end, new Filesystem.ReadFileCallback() {
+                    public void handleData(InputStream inputStream, String contentType) throws IOException {
+                        if (encoding == null) {
+                            sendBinaryChunks(inputStream, read);
+                        } else {
+                            sendTextChunks(inputStream, read);
+                        }
+                    }
+                });
+            } catch (FileNotFoundException e) {
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.IO_EXCEPTION, NOT_FOUND_ERR));
+                read.finish();
+            } catch (IOException e) {
+                LOG.d(LOG_TAG, e.getLocalizedMessage());
+                callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.IO_EXCEPTION, NOT_READABLE_ERR));
+                read.finish();
+            }
+        }
+
+        @Override
+        public void sendAbort() {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.IO_EXCEPTION, ABORT_ERR));
+        }
+
+        // Called holding a slot
+        private void sendBinaryChunks(InputStream inputStream, ChunkedReads.Read read) throws IOException {
+            do {
+                int index = chunk % buffers.length;
+                if (buffers[index] == null) {
+                    buffers[index] = new byte[chunkSize];
+                }
+                byte[] buffer = buffers[index];
+                int filled = 0;
+                while (filled < chunkSize) {
+                    int bytesRead = inputStream.read(buffer, filled, chunkSize - filled);
+                    if (bytesRead <= 0) {
+                        break;
+                    }
+                    filled += bytesRead;
+                }
+                if (filled == 0) {
+                    sendChunk(callbackContext, offset, new PluginResult(PluginResult.Status.OK, new byte[0]), true);
+                    read.finish();
+                    return;
+                }
+                sendChunk(callbackContext, offset, new PluginResult(PluginResult.Status.OK, buffer, 0, filled, false), false);
+                chunk++;
+                position += filled;
+                offset += filled;
+            } while (read.takeSlot());
+        }
+
+        // Called holding a slot. Decodes by hand rather than through a Reader, so that the
+        // bytes consumed are known exactly and the next run can reopen the file after them.
+        private void sendTextChunks(InputStream inputStream, ChunkedReads.Read read) throws IOException {
+            CharsetDecoder decoder = Charset.forName(encoding).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer bytes = ByteBuffer.allocate(8192);
+            bytes.flip();
+            CharBuffer chars = CharBuffer.allocate(chunkSize);
+            long runStart = position;
+            long bytesRead = 0;
+            boolean eof = false;
+            do {
+                chars.clear();
+                while (chars.hasRemaining()) {
+                    if (decoder.decode(bytes, chars, eof).isOverflow() || eof) {
+                        break;
+                    }
+                    bytes.compact();
+                    int count = inputStream.read(bytes.array(), bytes.position(), bytes.remaining());
+                    if (count > 0) {
+                        bytes.position(bytes.position() + count);
+                        bytesRead += count;
+                    } else {
+                        eof = true;
+                    }
+                    bytes.flip();
+                }
+                chars.flip();
+                if (chars.length() == 0) {
+                    sendChunk(callbackContext, offset, new PluginResult(PluginResult.Status.OK, ""), true);
+                    read.finish();
+                    return;
+                }
+                sendChunk(callbackContext, offset, new PluginResult(PluginResult.Status.OK, chars.toString()), false);
+                position = runStart + bytesRead - bytes.remaining();
+                offset += chars.length();
+            } while (read.takeSlot());
+        }
+    }
+
+    private static void sendChunk(CallbackContext callbackContext, long offset, PluginResult data, boolean done) {
+        PluginResult result = new PluginResult(PluginResult.Status.OK, Arrays.asList(
+                new PluginResult(PluginResult.Status.OK, offset),
+                data,
+                new PluginResult(PluginResult.Status.OK, done)));
+        result.setKeepCallback(!done);
+        callbackContext.sendPluginResult(result);
+    }
+
     /**
      * Write contents of file.
      *
@@ -1150,6 +1417,41 @@ public class FileUtils extends CordovaPlugin {
 
     }
 
+    /**
+     * Write several ranges of a file in place, without truncating it.
+     *
+     * @param ranges   Array of [position, data, isBinary] entries, written in order.
+     * @return The total number of bytes written.
+     */
+    private long writeRanges(String srcURLstr, JSONArray ranges) throws JSONException, FileNotFoundException, IOException, NoModificationAllowedException, InvalidModificationException {
+        int count = ranges.length();
+        long[] positions = new long[count];
+        String[] data = new String[count];
+        boolean[] isBinary = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            JSONArray range = ranges.getJSONArray(i);
+            positions[i] = range.getLong(0);
+            data[i] = range.getString(1);
+            isBinary[i] = range.optBoolean(2);
+            if (positions[i] < 0) {
+                throw new InvalidModificationException("Negative write position: " + positions[i]);
+            }
+        }
+        try {
+            LocalFilesystemURL inputURL = LocalFilesystemURL.parse(srcURLstr);
+            Filesystem fs = this.filesystemForURL(inputURL);
+            if (fs == null) {
+                throw new MalformedURLException("No installed handlers for this URL");
+            }
+
+            return fs.writeRangesToFileAtURL(inputURL, positions, data, isBinary);
+        } catch (IllegalArgumentException e) {
+            MalformedURLException mue = new MalformedURLException("Unrecognized filesystem URL");
+            mue.initCause(e);
+            throw mue;
+        }
+    }
+
     /**
      * Truncate the file to size
      */
@@ -1220,6 +1522,14 @@ public class FileUtils extends CordovaPlugin {
                         }
                     }, req.getRawArgs(), req.getCallbackContext());
                     break;
+                case ACTION_WRITE_RANGES:
+                    threadhelper(new FileOp() {
+                        public void run(JSONArray args) throws JSONException, FileNotFoundException, IOException, NoModificationAllowedException, InvalidModificationException {
+                            long written = writeRanges(args.getString(0), args.getJSONArray(1));
+                            req.getCallbackContext().sendPluginResult(new PluginResult(PluginResult.Status.OK, written));
+                        }
+                    }, req.getRawArgs(), req.getCallbackContext());
+                    break;
                 case ACTION_READ_ENTRIES:
                     threadhelper(new FileOp() {
                         public void run(JSONArray args) throws FileNotFoundException, JSONException, MalformedURLException {
@@ -1235,11 +1545,6 @@ public class FileUtils extends CordovaPlugin {
         }
     }
 
-    private String getMimeType(Uri uri) {
-        String fileExtensionFromUrl = MimeTypeMap.getFileExtensionFromUrl(uri.toString()).toLowerCase();
-        return MimeTypeMap.getSingleton().getMimeTypeFromExtension(fileExtensionFromUrl);
-    }
-
     public CordovaPluginPathHandler getPathHandler() {
         final CordovaResourceApi resourceApi = webView.getResourceApi();
 
@@ -1316,7 +1621,8 @@ public class FileUtils extends CordovaPlugin {
                             InputStream io = null;
                             if (isAssetsFS) {
                                 io = webView.getContext().getAssets().open(fileTarget);
-                                mimeType = getMimeType(fileUri);
+                                // fileTarget is relative to the assets root, getMimeType(Uri) would reject it
+                                mimeType = resourceApi.getMimeTypeFromPath(fileTarget);
                             } else {
                                 if (fileUri.getScheme() == null) {
                                     fileUri = Uri.parse(fileSystem.rootUri.getScheme() + "://" + fileUri.getPath());
@@ -23,21 +23,20 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
-import android.util.Base64;
 
 import org.apache.cordova.CordovaPreferences;
 import org.apache.cordova.CordovaResourceApi;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
-import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 public class LocalFilesystem extends Filesystem {
     private final Context context;
@@ -296,6 +295,17 @@ public class LocalFilesystem extends Filesystem {
             }
         }
 
+        // Create the whole tree first, then copy the files into it in parallel
+        List<ParallelCopy.Copy> copies = new ArrayList<ParallelCopy.Copy>();
+        collectCopies(srcFs, srcURL, dstDir, copies);
+        ParallelCopy.runAll(copies);
+
+        if (move) {
+            srcFs.recursiveRemoveFileAtLocalURL(srcURL);
+        }
+    }
+
+    private void collectCopies(final Filesystem srcFs, LocalFilesystemURL srcURL, File dstDir, List<ParallelCopy.Copy> copies) throws IOException, NoModificationAllowedException, InvalidModificationException {
         if (dstDir.exists()) {
             if (dstDir.list().length > 0) {
                 throw new InvalidModificationException("directory is not empty");
@@ -308,18 +318,14 @@ public class LocalFilesystem extends Filesystem {
         }
 
         LocalFilesystemURL[] children = srcFs.listChildren(srcURL);
-        for (LocalFilesystemURL childLocalUrl : children) {
-            File target = new File(dstDir, new File(childLocalUrl.path).getName());
+        for (final LocalFilesystemURL childLocalUrl : children) {
+            final File target = new File(dstDir, new File(childLocalUrl.path).getName());
             if (childLocalUrl.isDirectory) {
-                copyDirectory(srcFs, childLocalUrl, target, false);
+                collectCopies(srcFs, childLocalUrl, target, copies);
             } else {
-                copyFile(srcFs, childLocalUrl, target, false);
+                copies.add(() -> copyFile(srcFs, childLocalUrl, target, false));
             }
         }
-
-        if (move) {
-            srcFs.recursiveRemoveFileAtLocalURL(srcURL);
-        }
     }
 
     @Override
@@ -370,38 +376,48 @@ public class LocalFilesystem extends Filesystem {
     }
 
     @Override
-    public long writeToFileAtURL(LocalFilesystemURL inputURL, String data,
-            int offset, boolean isBinary) throws IOException, NoModificationAllowedException {
-
-        boolean append = false;
-        if (offset > 0) {
-            this.truncateFileAtURL(inputURL, offset);
-            append = true;
+    public void readFileAtURL(LocalFilesystemURL inputURL, long start, long end,
+                              ReadFileCallback readFileCallback) throws IOException {
+        // Read the range straight from the file's channel instead of streaming up to start
+        File file = new File(filesystemPathForURL(inputURL));
+        FileRangeInputStream inputStream = FileRangeInputStream.open(file, start, end);
+        try {
+            readFileCallback.handleData(inputStream, resourceApi.getMimeType(Uri.fromFile(file)));
+        } finally {
+            inputStream.close();
         }
+    }
 
-        byte[] rawData;
+    @Override
+    public long writeToFileAtURL(LocalFilesystemURL inputURL, String data,
+            int offset, boolean isBinary) throws IOException, NoModificationAllowedException {
+        // Bad base64 fails the call before the file is opened, so it is neither
+        // created nor truncated
         if (isBinary) {
-            rawData = Base64.decode(data, Base64.DEFAULT);
-        } else {
-            rawData = data.getBytes(Charset.defaultCharset());
+            FileChannelWriter.checkBase64(data);
         }
-        ByteArrayInputStream in = new ByteArrayInputStream(rawData);
         try
         {
-            byte buff[] = new byte[rawData.length];
             String absolutePath = filesystemPathForURL(inputURL);
-            FileOutputStream out = new FileOutputStream(absolutePath, append);
+            long written;
+            RandomAccessFile raf = new RandomAccessFile(absolutePath, "rw");
             try {
-                in.read(buff, 0, buff.length);
-                out.write(buff, 0, rawData.length);
-                out.flush();
+                FileChannel channel = raf.getChannel();
+                // FileWriter semantics: an offset past the end appends, and the file ends
+                // where the written data ends
+                long position = Math.min(Math.max(offset, 0), channel.size());
+                written = FileChannelWriter.write(channel, position, data, isBinary);
+                if (channel.size() > position + written) {
+                    channel.truncate(position + written);
+                }
             } finally {
                 // Always close the output
-                out.close();
+                raf.close();
             }
             if (isPublicDirectory(absolutePath)) {
                 broadcastNewFile(Uri.fromFile(new File(absolutePath)));
             }
+            return written;
         }
         catch (NullPointerException e)
         {
@@ -410,8 +426,42 @@ public class LocalFilesystem extends Filesystem {
             realException.initCause(e);
             throw realException;
         }
+    }
 
-        return rawData.length;
+    @Override
+    public long writeRangesToFileAtURL(LocalFilesystemURL inputURL, long[] positions, String[] data,
+            boolean[] isBinary) throws IOException, NoModificationAllowedException {
+        // Bad base64 in any range fails the call before the file is opened
+        for (int i = 0; i < positions.length; i++) {
+            if (isBinary[i]) {
+                FileChannelWriter.checkBase64(data[i]);
+            }
+        }
+        try
+        {
+            String absolutePath = filesystemPathForURL(inputURL);
+            long written = 0;
+            RandomAccessFile raf = new RandomAccessFile(absolutePath, "rw");
+            try {
+                FileChannel channel = raf.getChannel();
+                for (int i = 0; i < positions.length; i++) {
+                    written += FileChannelWriter.write(channel, positions[i], data[i], isBinary[i]);
+                }
+            } finally {
+                raf.close();
+            }
+            if (isPublicDirectory(absolutePath)) {
+                broadcastNewFile(Uri.fromFile(new File(absolutePath)));
+            }
+            return written;
+        }
+        catch (NullPointerException e)
+        {
+            // This is a bug in the Android implementation of the Java Stack
+            NoModificationAllowedException realException = new NoModificationAllowedException(inputURL.toString());
+            realException.initCause(e);
+            throw realException;
+        }
     }
 
     private boolean isPublicDirectory(String absolutePath) {
@@ -0,0 +1,233 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.scriptable.keyboard;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import android.view.KeyEvent;
+import android.view.inputmethod.InputConnection;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Delivers one burst of keystrokes per invocation, the keys that reach
+ * KeyboardService between two frames, and counts the InputConnection calls
+ * that costs. Lives in the keyboard package because InputEditQueue is
+ * package-private.
+ *
+ * direct makes one call per key the way KeyboardService did before the edit
+ * queue: commitText per character, deleteSurroundingText per Backspace and a
+ * down/up pair per Enter. queued goes through InputEditQueue and flushes once
+ * per burst, as the frame callback does. The typed text is a fixed script of
+ * words with a mistyped and erased letter every typoEvery-th word and an
+ * Enter every 20th word. The number of interest is calls / keystrokes from
+ * the aux counters: on a device every call is a binder transaction into the
+ * app, which the stub connection here does not pay.
+ *
+ * Setup replays the whole script both ways for every burst size and checks
+ * that the stub editor ends up with the same text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InputEditQueueBenchmark {
+
+    private static final String[] WORDS = {
+        "the", "keyboard", "sends", "every", "word", "straight", "into", "focused",
+        "field", "while", "scripts", "read", "context", "around", "cursor", "quickly"
+    };
+    private static final int SCRIPT_WORDS = 200;
+    private static final String BACKSPACE = "\b";
+    private static final String ENTER = "\n";
+
+    @Param({ "false", "true" })
+    public boolean queued;
+
+    @Param({ "1", "4", "16" })
+    public int burst;
+
+    @Param({ "5" })
+    public int typoEvery;
+
+    private String[] keys;
+    private int next;
+    private Editor editor;
+    private InputEditQueue queue;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Calls {
+        public long calls;
+        public long keystrokes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            calls = 0;
+            keystrokes = 0;
+        }
+    }
+
+    /**
+     * Stub connection standing in for the editor: counts every call and
+     * applies it to a document so the two paths can be compared.
+     */
+    static final class Editor implements InputConnection {
+        final StringBuilder doc = new StringBuilder();
+        long calls;
+
+        @Override
+        public boolean beginBatchEdit() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean endBatchEdit() {
+            calls++;
+            return true;
+        }
+
+        @Override
+        public boolean commitText(CharSequence text, int newCursorPosition) {
+            calls++;
+            doc.append(text);
+            return true;
+        }
+
+        @Override
+        public boolean deleteSurroundingText(int beforeLength, int afterLength) {
+            calls++;
+            doc.setLength(Math.max(0, doc.length() - beforeLength));
+            return true;
+        }
+
+        @Override
+        public boolean sendKeyEvent(KeyEvent event) {
+            calls++;
+            if (event.getAction() == KeyEvent.ACTION_DOWN && event.getKeyCode() == KeyEvent.KEYCODE_ENTER) {
+                doc.append('\n');
+            }
+            return true;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = script(typoEvery);
+        for (int size : new int[] { 1, 4, 16 }) {
+            String direct = replay(keys, false, size);
+            String viaQueue = replay(keys, true, size);
+            if (!direct.equals(viaQueue)) {
+                throw new IllegalStateException("queued edits diverge from direct ones at burst " + size);
+            }
+        }
+        editor = new Editor();
+        queue = newQueue(editor);
+    }
+
+    @Benchmark
+    public int typeBurst(Calls counters) {
+        long before = editor.calls;
+        for (int i = 0; i < burst; i++) {
+            type(keys[next], queued, editor, queue);
+            next = next + 1 == keys.length ? 0 : next + 1;
+        }
+        if (queued) {
+            queue.flush();
+        }
+        counters.calls += editor.calls - before;
+        counters.keystrokes += burst;
+        // Keep the stub document from growing for the whole run
+        if (editor.doc.length() > 4096) {
+            editor.doc.setLength(0);
+        }
+        return editor.doc.length();
+    }
+
+    private static void type(String key, boolean queued, Editor editor, InputEditQueue queue) {
+        if (key == BACKSPACE) {
+            if (queued) {
+                queue.deleteBefore(1);
+            } else {
+                editor.deleteSurroundingText(1, 0);
+            }
+        } else if (key == ENTER) {
+            if (queued) {
+                queue.sendKey(KeyEvent.KEYCODE_ENTER);
+            } else {
+                editor.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_ENTER));
+                editor.sendKeyEvent(new KeyEvent(KeyEvent.ACTION_UP, KeyEvent.KEYCODE_ENTER));
+            }
+        } else if (queued) {
+            queue.commitText(key);
+        } else {
+            editor.commitText(key, 1);
+        }
+    }
+
+    private static InputEditQueue newQueue(final Editor editor) {
+        return new InputEditQueue(new InputEditQueue.ConnectionProvider() {
+            @Override
+            public InputConnection getConnection() {
+                return editor;
+            }
+        });
+    }
+
+    private static String replay(String[] keys, boolean queued, int burst) {
+        Editor editor = new Editor();
+        InputEditQueue queue = newQueue(editor);
+        for (int i = 0; i < keys.length; i++) {
+            type(keys[i], queued, editor, queue);
+            if (queued && (i + 1) % burst == 0) {
+                queue.flush();
+            }
+        }
+        queue.flush();
+        return editor.doc.toString();
+    }
+
+    /**
+     * One key per element: a single character, BACKSPACE or ENTER.
+     */
+    private static String[] script(int typoEvery) {
+        ArrayList<String> keys = new ArrayList<String>();
+        for (int w = 0; w < SCRIPT_WORDS; w++) {
+            String word = WORDS[w % WORDS.length];
+            for (int i = 0; i < word.length(); i++) {
+                keys.add(String.valueOf(word.charAt(i)));
+            }
+            if (typoEvery > 0 && w % typoEvery == typoEvery - 1) {
+                keys.add("x");
+                keys.add(BACKSPACE);
+            }
+            keys.add(w % 20 == 19 ? ENTER : " ");
+        }
+        return keys.toArray(new String[0]);
+    }
+}
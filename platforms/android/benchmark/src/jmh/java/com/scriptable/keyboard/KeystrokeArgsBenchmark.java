@@ -0,0 +1,118 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package com.scriptable.keyboard;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Decodes the arguments of one keystroke per invocation, the way
+ * KeyboardPlugin.execute receives them from the bridge: a raw JSON array
+ * holding one compact "key" command or nothing at all.
+ *
+ * keystrokeArgs is the plugin's fast path through KeystrokeArgs. jsonArray is
+ * what CordovaPlugin.execute does for every other plugin: build a JSONArray
+ * and read its first element. The stream mixes typed letters (Latin and
+ * Cyrillic), Backspace, Enter, argument-less calls and an escaped quote.
+ *
+ * Allocations per keystroke are the number of interest. Run with the GC
+ * profiler and read gc.alloc.rate.norm, bytes per operation:
+ *
+ *     java -jar benchmarks.jar KeystrokeArgsBenchmark -prof gc
+ *
+ * Lives in the keyboard package because KeystrokeArgs is package-private.
+ * Setup checks that both decoders agree on every argument string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeystrokeArgsBenchmark {
+
+    private static final String[] KEYSTROKES = {
+        "[\"th\"]", "[\"te\"]", "[\"t \"]", "[\"tк\"]", "[\"tл\"]", "[\"b\"]", "[\"tю\"]",
+        "[\"tч\"]", "[\"b3\"]", "[\"e\"]", "[]", "[\"t\\\"\"]", "[\"tw\"]", "[\"b\"]", "[\"to\"]"
+    };
+
+    private int next;
+
+    @Setup
+    public void setUp() throws JSONException {
+        for (String rawArgs : KEYSTROKES) {
+            int fast = decodeFast(rawArgs);
+            int json = decodeJson(rawArgs);
+            if (fast != json) {
+                throw new IllegalStateException(rawArgs + " decodes to " + fast + " via KeystrokeArgs, " + json + " via JSONArray");
+            }
+        }
+    }
+
+    @Benchmark
+    public int keystrokeArgs() {
+        return decodeFast(nextKeystroke());
+    }
+
+    @Benchmark
+    public int jsonArray() throws JSONException {
+        return decodeJson(nextKeystroke());
+    }
+
+    private String nextKeystroke() {
+        String rawArgs = KEYSTROKES[next];
+        next = next + 1 == KEYSTROKES.length ? 0 : next + 1;
+        return rawArgs;
+    }
+
+    // Both decoders reduce a keystroke to the same number: -1 for no
+    // arguments, otherwise the op character plus what it carries
+    private static int decodeFast(String rawArgs) {
+        if (KeystrokeArgs.isEmpty(rawArgs)) {
+            return -1;
+        }
+        String op = KeystrokeArgs.singleString(rawArgs);
+        return summarize(op);
+    }
+
+    private static int decodeJson(String rawArgs) throws JSONException {
+        JSONArray args = new JSONArray(rawArgs);
+        if (args.length() == 0) {
+            return -1;
+        }
+        return summarize(args.getString(0));
+    }
+
+    private static int summarize(String op) {
+        switch (op.charAt(0)) {
+            case KeystrokeArgs.OP_TYPE:
+                return op.charAt(0) * 31 + op.charAt(op.length() - 1);
+            case KeystrokeArgs.OP_BACKSPACE:
+                return op.charAt(0) * 31 + KeystrokeArgs.backspaceCount(op);
+            default:
+                return op.charAt(0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.AllowList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Checks sub-resource URLs against allow lists of growing size, as
+ * SystemWebViewClient.shouldInterceptRequest does for every request. The cost
+ * should stay flat as entries are added.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AllowListBenchmark {
+
+    @Param({ "4", "64", "256" })
+    public int entries;
+
+    private AllowList allowList;
+
+    @Setup
+    public void setUp() {
+        allowList = new AllowList();
+        allowList.addAllowListEntry("file:///*", false);
+        allowList.addAllowListEntry("data:*", false);
+        for (int i = 0; i < entries - 2; i++) {
+            switch (i % 4) {
+                case 0:
+                    allowList.addAllowListEntry("https://api" + i + ".example.com/*", false);
+                    break;
+                case 1:
+                    allowList.addAllowListEntry("*.cdn" + i + ".example.net", false);
+                    break;
+                case 2:
+                    allowList.addAllowListEntry("https://static" + i + ".example.org:8443/assets/*", false);
+                    break;
+                default:
+                    allowList.addAllowListEntry("http://legacy" + i + ".example.com/v1/*/items", false);
+                    break;
+            }
+        }
+        // The entry the requests below hit, added last so a linear scan has to reach it
+        allowList.addAllowListEntry("https://*.scripts.example.com/lib/*", false);
+    }
+
+    @Benchmark
+    public boolean allowedSubresource() {
+        return allowList.isUrlAllowListed("https://eu.scripts.example.com/lib/keyboard.js");
+    }
+
+    @Benchmark
+    public boolean deniedSubresource() {
+        return allowList.isUrlAllowListed("https://tracker.example.io/pixel.gif");
+    }
+
+    @Benchmark
+    public boolean localFile() {
+        return allowList.isUrlAllowListed("file:///android_asset/www/js/app.js");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.AssetCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loads the set of assets the keyboard page requests, the way the "/" path handler
+ * in SystemWebViewClient serves them. A cold load opens and streams every file, a
+ * warm load serves every file from a populated AssetCache. Files on disk stand in
+ * for the APK's asset stream, which on a device is slower still.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AssetCacheBenchmark {
+
+    // Sizes of the www assets loaded by index.html
+    private static final String[] PATHS = {
+        "index.html", "css/index.css", "js/debug.js", "js/scripts.js",
+        "js/keyboard.js", "js/script-installer.js", "js/app.js"
+    };
+    private static final int[] SIZES = { 2984, 3723, 10236, 7821, 9859, 12341, 12583 };
+
+    private File root;
+    private AssetCache warmCache;
+    private final byte[] buffer = new byte[8192];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = File.createTempFile("www", "");
+        root.delete();
+        for (int i = 0; i < PATHS.length; i++) {
+            File file = new File(root, PATHS[i]);
+            file.getParentFile().mkdirs();
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(Payloads.bytes(SIZES[i]));
+            } finally {
+                out.close();
+            }
+        }
+        warmCache = new AssetCache(AssetCache.DEFAULT_MAX_BYTES);
+        coldCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (String path : PATHS) {
+            new File(root, path).delete();
+        }
+        new File(root, "css").delete();
+        new File(root, "js").delete();
+        root.delete();
+    }
+
+    @Benchmark
+    public long uncached() throws IOException {
+        long total = 0;
+        for (String path : PATHS) {
+            total += drain(new FileInputStream(new File(root, path)));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long coldCache() throws IOException {
+        warmCache.clear();
+        return warmCache();
+    }
+
+    @Benchmark
+    public long warmCache() throws IOException {
+        long total = 0;
+        for (String path : PATHS) {
+            AssetCache.Entry entry = warmCache.get(path);
+            if (entry == null) {
+                InputStream in = new FileInputStream(new File(root, path));
+                entry = warmCache.put(path, in, in.available(), "text/plain");
+            }
+            total += drain(entry.openStream());
+        }
+        return total;
+    }
+
+    private long drain(InputStream in) throws IOException {
+        long total = 0;
+        try {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                total += n;
+            }
+        } finally {
+            in.close();
+        }
+        return total;
+    }
+}
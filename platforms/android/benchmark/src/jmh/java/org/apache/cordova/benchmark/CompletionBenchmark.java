@@ -0,0 +1,217 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.scriptable.keyboard.CompletionDictionary;
+import com.scriptable.keyboard.DictionaryCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Top-5 prefix completion over a generated word list with Zipf-distributed
+ * frequencies, as KeyboardService runs it after every commit.
+ *
+ * mapped queries a CompletionDictionary compiled by DictionaryCompiler and
+ * memory-mapped from a file, the way the IME maps it from the APK.
+ * sortedArray is the obvious heap-loaded alternative: a sorted String[] with
+ * scores, a binary search to the prefix range and a scan of that range.
+ * Short prefixes are the interesting case, their range covers a large part of
+ * the list.
+ *
+ * At the end of the trial the file size, the part of the mapping that became
+ * resident (Rss from /proc/self/smaps, Linux only) and the heap taken by the
+ * sorted array are printed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompletionBenchmark {
+
+    private static final int LIMIT = 5;
+    private static final int PREFIXES = 1024;
+
+    @Param({ "500000" })
+    public int words;
+
+    @Param({ "1", "2", "4" })
+    public int prefixLength;
+
+    private File file;
+    private CompletionDictionary dictionary;
+    private String[] sorted;
+    private int[] scores;
+    private long heapBytes;
+    private String[] prefixes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        TreeMap<String, Long> counts = new TreeMap<String, Long>();
+        StringBuilder word = new StringBuilder();
+        int rank = 0;
+        while (counts.size() < words) {
+            word.setLength(0);
+            int length = 2 + random.nextInt(11);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            DictionaryCompiler.add(counts, word.toString(), 10000000L / ++rank + 1);
+        }
+
+        file = File.createTempFile("words", ".dict");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(DictionaryCompiler.compile(counts));
+        } finally {
+            out.close();
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            dictionary = CompletionDictionary.map(raf.getChannel(), 0, raf.length());
+        } finally {
+            raf.close();
+        }
+
+        long before = usedHeap();
+        sorted = new String[counts.size()];
+        scores = new int[counts.size()];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            // Fresh copies, so that the strings are not shared with the TreeMap
+            sorted[i] = new String(entry.getKey().toCharArray());
+            // Raw counts rank the same way; asking the dictionary would page in all of it
+            scores[i] = (int) (long) entry.getValue();
+            i++;
+        }
+        counts = null;
+        heapBytes = usedHeap() - before;
+
+        prefixes = new String[PREFIXES];
+        for (int p = 0; p < PREFIXES; p++) {
+            String source = sorted[random.nextInt(sorted.length)];
+            prefixes[p] = source.substring(0, Math.min(prefixLength, source.length()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws IOException {
+        System.out.println();
+        System.out.println("dictionary file: " + file.length() / 1024 + " KiB, resident: "
+            + residentKib(file) + " KiB; sorted array heap: " + heapBytes / 1024 + " KiB");
+    }
+
+    private String nextPrefix() {
+        next = (next + 1) & (PREFIXES - 1);
+        return prefixes[next];
+    }
+
+    @Benchmark
+    public List<String> mapped() {
+        return dictionary.suggest(nextPrefix(), LIMIT);
+    }
+
+    @Benchmark
+    public List<String> sortedArray() {
+        String prefix = nextPrefix();
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        // Top LIMIT by score with insertion into a small sorted window
+        int[] best = new int[LIMIT];
+        int found = 0;
+        for (int i = from; i < to; i++) {
+            if (found == LIMIT && scores[i] <= scores[best[LIMIT - 1]]) {
+                continue;
+            }
+            int j = found < LIMIT ? found++ : LIMIT - 1;
+            while (j > 0 && scores[best[j - 1]] < scores[i]) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = i;
+        }
+        ArrayList<String> result = new ArrayList<String>(found);
+        for (int i = 0; i < found; i++) {
+            result.add(sorted[best[i]]);
+        }
+        return result;
+    }
+
+    private int lowerBound(String key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Rss of the mapping of the given file, -1 where /proc is not available
+    private static long residentKib(File file) throws IOException {
+        File smaps = new File("/proc/self/smaps");
+        if (!smaps.exists()) {
+            return -1;
+        }
+        String path = file.getCanonicalPath();
+        long total = 0;
+        boolean inMapping = false;
+        BufferedReader reader = new BufferedReader(new FileReader(smaps));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.matches("[0-9a-f]+-[0-9a-f]+ .*")) {
+                    inMapping = line.endsWith(path);
+                } else if (inMapping && line.startsWith("Rss:")) {
+                    total += Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return total;
+    }
+}
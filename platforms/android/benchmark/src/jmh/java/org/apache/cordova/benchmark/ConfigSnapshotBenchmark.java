@@ -0,0 +1,117 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.ConfigXmlParser;
+import org.kxml2.io.KXmlParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Builds the preferences and plugin entries of the app's config.xml, once by
+ * parsing the XML as ConfigXmlParser.parse(Context) does on every activity
+ * launch, and once by restoring the snapshot that later launches read instead.
+ * On a device the XML comes from a compiled binary resource rather than text,
+ * so only the relative cost is meaningful here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigSnapshotBenchmark {
+
+    private static final long KEY = 1700000000000L;
+
+    // app/src/main/res/xml/config.xml
+    private static final String CONFIG_XML =
+        "<?xml version='1.0' encoding='utf-8'?>\n" +
+        "<widget id=\"com.scriptable.keyboard\" version=\"1.0.0\" xmlns=\"http://www.w3.org/ns/widgets\" xmlns:cdv=\"http://cordova.apache.org/ns/1.0\">\n" +
+        "    <feature name=\"KeyboardPlugin\">\n" +
+        "        <param name=\"android-package\" value=\"com.scriptable.keyboard.KeyboardPlugin\" />\n" +
+        "    </feature>\n" +
+        "    <feature name=\"File\">\n" +
+        "        <param name=\"android-package\" value=\"org.apache.cordova.file.FileUtils\" />\n" +
+        "        <param name=\"onload\" value=\"true\" />\n" +
+        "    </feature>\n" +
+        "    <allow-navigation href=\"cdvfile:*\" />\n" +
+        "    <feature name=\"Device\">\n" +
+        "        <param name=\"android-package\" value=\"org.apache.cordova.device.Device\" />\n" +
+        "    </feature>\n" +
+        "    <name>ScriptableKeyboard</name>\n" +
+        "    <description>\u0420\u0430\u0441\u0448\u0438\u0440\u044f\u0435\u043c\u0430\u044f \u043a\u043b\u0430\u0432\u0438\u0430\u0442\u0443\u0440\u0430 \u0441 \u0441\u0438\u0441\u0442\u0435\u043c\u043e\u0439 \u0441\u043a\u0440\u0438\u043f\u0442\u043e\u0432</description>\n" +
+        "    <author email=\"dev@example.com\" href=\"https://example.com\">Developer</author>\n" +
+        "    <content src=\"index.html\" />\n" +
+        "    <uses-permission android:name=\"android.permission.SYSTEM_ALERT_WINDOW\" />\n" +
+        "    <uses-permission android:name=\"android.permission.WRITE_EXTERNAL_STORAGE\" />\n" +
+        "    <uses-permission android:name=\"android.permission.READ_EXTERNAL_STORAGE\" />\n" +
+        "    <service android:exported=\"true\" android:name=\"com.scriptable.keyboard.KeyboardService\" android:permission=\"android.permission.BIND_INPUT_METHOD\">\n" +
+        "        <intent-filter>\n" +
+        "            <action android:name=\"android.view.InputMethod\" />\n" +
+        "        </intent-filter>\n" +
+        "        <meta-data android:name=\"android.view.im\" android:resource=\"@xml/method\" />\n" +
+        "    </service>\n" +
+        "    <resource-file src=\"platforms/android/app/src/main/res/xml/method.xml\" target=\"res/xml/method.xml\" />\n" +
+        "    <preference name=\"loglevel\" value=\"DEBUG\" />\n" +
+        "    <preference name=\"android-minSdkVersion\" value=\"21\" />\n" +
+        "    <preference name=\"android-targetSdkVersion\" value=\"35\" />\n" +
+        "    <preference name=\"android-compileSdkVersion\" value=\"35\" />\n" +
+        "    <preference name=\"DeferredStartupPlugins\" value=\"File\" />\n" +
+        "</widget>\n";
+
+    private byte[] snapshot;
+
+    @Setup
+    public void setUp() throws IOException, XmlPullParserException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        parseXml().writeSnapshot(new DataOutputStream(buffer), KEY);
+        snapshot = buffer.toByteArray();
+    }
+
+    @Benchmark
+    public ConfigXmlParser parseXml() throws XmlPullParserException {
+        XmlPullParser xml = new KXmlParser();
+        xml.setInput(new StringReader(CONFIG_XML));
+        ConfigXmlParser parser = new ConfigXmlParser();
+        parser.parse(xml);
+        return parser;
+    }
+
+    @Benchmark
+    public ConfigXmlParser readSnapshot() throws IOException {
+        ConfigXmlParser parser = new ConfigXmlParser();
+        if (!parser.readSnapshot(new DataInputStream(new ByteArrayInputStream(snapshot)), KEY)) {
+            throw new IllegalStateException("snapshot rejected");
+        }
+        return parser;
+    }
+}
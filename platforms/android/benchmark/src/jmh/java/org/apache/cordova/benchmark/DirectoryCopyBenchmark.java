@@ -0,0 +1,172 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CordovaResourceApi;
+import org.apache.cordova.file.ParallelCopy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Copies a script library of 500 files in 25 directories the way
+ * LocalFilesystem.copyDirectory used to (one file after another through an 8 KB
+ * heap buffer), with the channel transfer CordovaResourceApi.copyResource now uses,
+ * and with that transfer run through ParallelCopy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DirectoryCopyBenchmark {
+
+    private static final int DIRECTORIES = 25;
+    private static final int FILES_PER_DIRECTORY = 20;
+
+    private File source;
+    private File target;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = createTempDir("library");
+        // Script sizes spread between 512 bytes and 64 KB, like a typical npm package
+        Random random = new Random(42);
+        byte[] payload = Payloads.bytes(64 * 1024);
+        for (int d = 0; d < DIRECTORIES; d++) {
+            File dir = new File(source, "module" + d);
+            dir.mkdir();
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                FileOutputStream out = new FileOutputStream(new File(dir, "script" + f + ".js"));
+                try {
+                    out.write(payload, 0, 512 + random.nextInt(payload.length - 512));
+                } finally {
+                    out.close();
+                }
+            }
+        }
+        buffer = new byte[8192];
+    }
+
+    @Setup(Level.Invocation)
+    public void createTarget() throws IOException {
+        target = createTempDir("copy");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() {
+        delete(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        delete(source);
+    }
+
+    @Benchmark
+    public File streamCopy() throws IOException {
+        for (File[] pair : prepareTree()) {
+            FileInputStream in = new FileInputStream(pair[0]);
+            FileOutputStream out = new FileOutputStream(pair[1]);
+            try {
+                int n;
+                while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+                out.close();
+            }
+        }
+        return target;
+    }
+
+    @Benchmark
+    public File channelCopy() throws Exception {
+        for (File[] pair : prepareTree()) {
+            transfer(pair[0], pair[1]);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public File parallelChannelCopy() throws Exception {
+        List<ParallelCopy.Copy> copies = new ArrayList<ParallelCopy.Copy>();
+        for (final File[] pair : prepareTree()) {
+            copies.add(() -> transfer(pair[0], pair[1]));
+        }
+        ParallelCopy.runAll(copies);
+        return target;
+    }
+
+    // Creates the target directories and returns the {source, target} file pairs
+    private List<File[]> prepareTree() {
+        List<File[]> pairs = new ArrayList<File[]>(DIRECTORIES * FILES_PER_DIRECTORY);
+        for (File dir : source.listFiles()) {
+            File targetDir = new File(target, dir.getName());
+            targetDir.mkdir();
+            for (File file : dir.listFiles()) {
+                pairs.add(new File[] { file, new File(targetDir, file.getName()) });
+            }
+        }
+        return pairs;
+    }
+
+    private static void transfer(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        FileOutputStream out = new FileOutputStream(to);
+        try {
+            CordovaResourceApi.transferFully(in.getChannel(), 0, in.getChannel().size(), out.getChannel());
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
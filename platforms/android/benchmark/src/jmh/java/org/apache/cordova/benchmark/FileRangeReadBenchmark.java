@@ -0,0 +1,112 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.file.FileRangeInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Reads a range from the tail of a 100 MB file the way LocalFilesystem.readFileAtURL
+ * used to (a FileInputStream skipped to the start offset) and through
+ * FileRangeInputStream in both its seek-and-read and memory-mapped modes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileRangeReadBenchmark {
+
+    private static final long FILE_SIZE = 100L * 1024 * 1024;
+
+    // Ranges below FileRangeInputStream.MAP_THRESHOLD are never mapped: mapping many small
+    // ranges in a tight loop runs out of mappings before the GC releases them
+    @Param({ "1048576", "16777216" })
+    public int rangeSize;
+
+    private File file;
+    private long start;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("range-read", ".bin");
+        byte[] block = Payloads.bytes(1024 * 1024);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (long written = 0; written < FILE_SIZE; written += block.length) {
+                out.write(block);
+            }
+        } finally {
+            out.close();
+        }
+        start = FILE_SIZE - rangeSize;
+        buffer = new byte[8192];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long skipStream() throws IOException {
+        InputStream in = new FileInputStream(file);
+        in.skip(start);
+        return drain(in, rangeSize);
+    }
+
+    @Benchmark
+    public long seeked() throws IOException {
+        return drain(new FileRangeInputStream(new RandomAccessFile(file, "r"), start, FILE_SIZE, false), rangeSize);
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        return drain(new FileRangeInputStream(new RandomAccessFile(file, "r"), start, FILE_SIZE, true), rangeSize);
+    }
+
+    private long drain(InputStream in, long limit) throws IOException {
+        long total = 0;
+        try {
+            int n;
+            while (total < limit && (n = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total))) > 0) {
+                total += n;
+            }
+        } finally {
+            in.close();
+        }
+        return total;
+    }
+}
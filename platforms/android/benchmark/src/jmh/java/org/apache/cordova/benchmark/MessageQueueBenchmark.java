@@ -0,0 +1,95 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.NativeToJsMessageQueue;
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a full enqueue + flush cycle of NativeToJsMessageQueue: queueDepth
+ * results of the given kind are added, then drained with popAndEncode()
+ * (the PROMPT bridge path) or popAndEncodeAsJs() (the eval/loadUrl path).
+ * With queueDepth=1 this is effectively a benchmark of JsMessage.encodeAsMessageHelper.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageQueueBenchmark {
+
+    @Param({ Payloads.STRING, Payloads.JSON, Payloads.BINARY, Payloads.MULTIPART })
+    public String kind;
+
+    @Param({ "16", "1024", "65536" })
+    public int payloadSize;
+
+    @Param({ "1", "16", "256" })
+    public int queueDepth;
+
+    @Param({ "false", "true" })
+    public boolean lockFree;
+
+    private NativeToJsMessageQueue queue;
+    private PluginResult result;
+
+    @Setup
+    public void setUp() throws Exception {
+        queue = new NativeToJsMessageQueue(lockFree);
+        queue.addBridgeMode(new NativeToJsMessageQueue.NoOpBridgeMode());
+        queue.setBridgeMode(0);
+        result = Payloads.create(kind, payloadSize);
+    }
+
+    private void fill() {
+        for (int i = 0; i < queueDepth; i++) {
+            queue.addPluginResult(result, "KeyboardPlugin1");
+        }
+    }
+
+    @Benchmark
+    public int popAndEncode() {
+        fill();
+        int length = 0;
+        String encoded;
+        while ((encoded = queue.popAndEncode(false)) != null) {
+            length += encoded.length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int popAndEncodeAsJs() {
+        fill();
+        int length = 0;
+        String encoded;
+        while ((encoded = queue.popAndEncodeAsJs()) != null) {
+            length += encoded.length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.cordova.NativeToJsMessageQueue;
+import org.apache.cordova.PluginResult;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * NativeToJsMessageQueue under contention: PRODUCERS plugin threads add results
+ * while one bridge thread flushes them with popAndEncode(), the way the PROMPT
+ * bridge drains the queue while plugins keep answering from the thread pool.
+ * lockFree compares the monitor-guarded ring buffer with the lock-free inbox.
+ *
+ * produce is timed per addPluginResult call plus work tokens of simulated
+ * plugin work (Blackhole.consumeCPU). The results are progress updates
+ * (keepCallback), the only kind the queue may drop. With work=0 the producers
+ * outrun the consumer and the queue sits at capacity, dropping them; with some
+ * work it keeps up. consume is timed per popAndEncode() call, including the empty
+ * ones. Its counters report the messages it delivered and how many the queue
+ * dropped as full.
+ *
+ * Before any timing, setup runs PRODUCERS threads against a live consumer
+ * several times and checks that every message arrives exactly once and that
+ * each producer's messages arrive in the order it added them.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageQueueContentionBenchmark {
+
+    private static final int PRODUCERS = 3;
+    // Stays under the queue's capacity, so even a stalled consumer loses nothing
+    private static final int CHECK_MESSAGES = 4000;
+    private static final int CHECK_ROUNDS = 20;
+
+    @Param({ "false", "true" })
+    public boolean lockFree;
+
+    @Param({ "64" })
+    public int payloadSize;
+
+    @Param({ "0", "1000" })
+    public int work;
+
+    private NativeToJsMessageQueue queue;
+    private PluginResult result;
+    // Drop count seen by the consumer so far, to report per-iteration deltas
+    private long droppedSeen;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Flushed {
+        public long messages;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+            dropped = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        for (int round = 0; round < CHECK_ROUNDS; round++) {
+            checkDelivery(lockFree);
+        }
+        queue = createQueue(lockFree);
+        result = Payloads.create(Payloads.STRING, payloadSize);
+        result.setKeepCallback(true);
+    }
+
+    private static NativeToJsMessageQueue createQueue(boolean lockFree) {
+        NativeToJsMessageQueue queue = new NativeToJsMessageQueue(lockFree);
+        queue.addBridgeMode(new NativeToJsMessageQueue.NoOpBridgeMode());
+        queue.setBridgeMode(0);
+        return queue;
+    }
+
+    @Benchmark
+    @Group("bridge")
+    @GroupThreads(PRODUCERS)
+    public void produce() {
+        Blackhole.consumeCPU(work);
+        queue.addPluginResult(result, "KeyboardPlugin1");
+    }
+
+    @Benchmark
+    @Group("bridge")
+    @GroupThreads(1)
+    public int consume(Flushed flushed) {
+        String encoded = queue.popAndEncode(false);
+        if (encoded == null) {
+            return 0;
+        }
+        flushed.messages += countMessages(encoded);
+        long dropped = queue.getDroppedMessageCount();
+        flushed.dropped += dropped - droppedSeen;
+        droppedSeen = dropped;
+        return encoded.length();
+    }
+
+    private static int countMessages(String encoded) {
+        int count = 0;
+        int i = 0;
+        while (i < encoded.length() && encoded.charAt(i) != '*') {
+            int space = encoded.indexOf(' ', i);
+            i = space + 1 + Integer.parseInt(encoded.substring(i, space));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Each producer adds "J<producer>:<sequence>" statements while the calling
+     * thread flushes. Fails unless every statement arrives once, in per-producer order.
+     */
+    private static void checkDelivery(boolean lockFree) throws InterruptedException {
+        final NativeToJsMessageQueue queue = createQueue(lockFree);
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            final String prefix = p + ":";
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < CHECK_MESSAGES; i++) {
+                            queue.addJavaScript(prefix + i);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        int[] nextSequence = new int[PRODUCERS];
+        int received = 0;
+        start.countDown();
+        boolean producing = true;
+        while (true) {
+            String encoded = queue.popAndEncode(false);
+            if (encoded == null) {
+                if (!producing) {
+                    break;
+                }
+                producing = false;
+                for (Thread producer : producers) {
+                    producing |= producer.isAlive();
+                }
+                // One more flush after the last producer finished picks up its tail
+                continue;
+            }
+            int i = 0;
+            while (i < encoded.length() && encoded.charAt(i) != '*') {
+                int space = encoded.indexOf(' ', i);
+                int end = space + 1 + Integer.parseInt(encoded.substring(i, space));
+                String statement = encoded.substring(space + 2, end);
+                int colon = statement.indexOf(':');
+                int producer = Integer.parseInt(statement.substring(0, colon));
+                int sequence = Integer.parseInt(statement.substring(colon + 1));
+                if (sequence != nextSequence[producer]) {
+                    throw new IllegalStateException("producer " + producer + " message " + sequence
+                            + " arrived, expected " + nextSequence[producer] + " (lockFree=" + lockFree + ")");
+                }
+                nextSequence[producer]++;
+                received++;
+                i = end;
+            }
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException(failure.get());
+        }
+        if (received != PRODUCERS * CHECK_MESSAGES || queue.getDroppedMessageCount() != 0) {
+            throw new IllegalStateException(received + " of " + PRODUCERS * CHECK_MESSAGES + " messages arrived, "
+                    + queue.getDroppedMessageCount() + " dropped (lockFree=" + lockFree + ")");
+        }
+    }
+}
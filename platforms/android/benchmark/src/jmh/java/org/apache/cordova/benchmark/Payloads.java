@@ -0,0 +1,90 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds PluginResults of a given payload kind and approximate size in characters/bytes.
+ */
+final class Payloads {
+    static final String STRING = "string";
+    static final String JSON = "json";
+    static final String BINARY = "binary";
+    static final String BINARY_STRING = "binarystring";
+    static final String MULTIPART = "multipart";
+
+    private Payloads() {
+    }
+
+    static String text(int size) {
+        char[] chars = new char[size];
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + (i % 26));
+        }
+        return new String(chars);
+    }
+
+    static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    static JSONObject json(int size) throws JSONException {
+        JSONObject obj = new JSONObject();
+        int fieldSize = 32;
+        int fields = Math.max(1, size / (fieldSize + 8));
+        String value = text(fieldSize);
+        for (int i = 0; i < fields; i++) {
+            obj.put("f" + i, value);
+        }
+        return obj;
+    }
+
+    static PluginResult create(String kind, int size) throws JSONException {
+        switch (kind) {
+            case STRING:
+                return new PluginResult(PluginResult.Status.OK, text(size));
+            case JSON:
+                return new PluginResult(PluginResult.Status.OK, json(size));
+            case BINARY:
+                return new PluginResult(PluginResult.Status.OK, bytes(size));
+            case BINARY_STRING:
+                return new PluginResult(PluginResult.Status.OK, bytes(size), true);
+            case MULTIPART: {
+                List<PluginResult> parts = new ArrayList<PluginResult>(Arrays.asList(
+                    new PluginResult(PluginResult.Status.OK, text(size / 2)),
+                    new PluginResult(PluginResult.Status.OK, bytes(size / 2)),
+                    new PluginResult(PluginResult.Status.OK, size)));
+                return new PluginResult(PluginResult.Status.OK, parts);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown payload kind: " + kind);
+        }
+    }
+}
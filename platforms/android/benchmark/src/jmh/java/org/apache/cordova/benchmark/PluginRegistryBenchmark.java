@@ -0,0 +1,76 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.PluginEntry;
+import org.apache.cordova.PluginRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Looks plugins up the way PluginManager.exec() does for every bridge call, from
+ * one thread and from several at once (the UI thread, the bridge thread and
+ * plugin worker threads all call getPlugin). The contended lookup should cost
+ * about as much as the uncontended one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PluginRegistryBenchmark {
+
+    // The built-in services followed by the ones in this app's config.xml
+    private static final String[] SERVICES = {
+        "CordovaAllowListPlugin", "CoreAndroid", "KeyboardPlugin", "File", "Device"
+    };
+
+    private PluginRegistry registry;
+
+    @Setup
+    public void setUp() {
+        registry = new PluginRegistry(entry -> new CordovaPlugin() { });
+        for (String service : SERVICES) {
+            registry.add(new PluginEntry(service, CordovaPlugin.class.getName(), false), null);
+        }
+    }
+
+    @Benchmark
+    public CordovaPlugin lookup() {
+        return registry.getPlugin("KeyboardPlugin");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CordovaPlugin lookupContended() {
+        return registry.getPlugin("KeyboardPlugin");
+    }
+
+    @Benchmark
+    public CordovaPlugin[] iteratePlugins() {
+        return registry.getPlugins();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures PluginResult construction, which is where string/JSON payloads are
+ * serialized and binary payloads are base64-encoded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PluginResultBenchmark {
+
+    @Param({ "16", "1024", "65536", "1048576" })
+    public int payloadSize;
+
+    private String text;
+    private JSONObject json;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        text = Payloads.text(payloadSize);
+        json = Payloads.json(payloadSize);
+        bytes = Payloads.bytes(payloadSize);
+    }
+
+    @Benchmark
+    public PluginResult string() {
+        return new PluginResult(PluginResult.Status.OK, text);
+    }
+
+    @Benchmark
+    public PluginResult json() {
+        return new PluginResult(PluginResult.Status.OK, json);
+    }
+
+    @Benchmark
+    public PluginResult arrayBuffer() {
+        return new PluginResult(PluginResult.Status.OK, bytes);
+    }
+
+    @Benchmark
+    public PluginResult binaryString() {
+        return new PluginResult(PluginResult.Status.OK, bytes, true);
+    }
+}
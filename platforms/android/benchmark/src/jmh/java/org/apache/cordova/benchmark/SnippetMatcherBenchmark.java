@@ -0,0 +1,219 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.scriptable.keyboard.SnippetMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Snippet trigger detection as KeyboardService runs it on every typeText,
+ * with a table of user triggers like ";sig" or ";addr".
+ *
+ * automaton feeds one keystroke into SnippetMatcher. suffixLookup is the
+ * straightforward alternative: look up every suffix of the recently typed
+ * text, longest first, in a HashMap of triggers. Both measure throughput and,
+ * with SampleTime, the per-keystroke latency distribution. The typed text is
+ * random words with a trigger every 40 words or so; setup checks that both
+ * find the same number of expansions in it.
+ *
+ * putRemove adds and removes one trigger in the live automaton, update
+ * applies a whole table that differs in one trigger (what setSnippets does
+ * after ScriptManager saves), and rebuild builds the automaton from scratch,
+ * which is what a non-incremental matcher would pay on every script change.
+ */
+@State(Scope.Thread)
+public class SnippetMatcherBenchmark {
+
+    private static final int KEYSTROKES = 1 << 16;
+    private static final int EXTRA = 1024;
+    private static final String[] WORDS = {
+        "the", "keyboard", "sends", "every", "word", "straight", "into", "focused",
+        "field", "while", "scripts", "read", "context", "around", "cursor", "quickly"
+    };
+
+    @Param({ "10000" })
+    public int triggers;
+
+    private HashMap<String, String> table;
+    private SnippetMatcher matcher;
+    private String[] keystrokes;
+    private int next;
+
+    private StringBuilder recent;
+    private int maxTriggerLength;
+
+    private String[] extra;
+    private HashMap<String, String> changedTable;
+    private int nextExtra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        table = new HashMap<String, String>();
+        String[] list = new String[triggers];
+        while (table.size() < triggers) {
+            String trigger = randomTrigger(random);
+            if (table.put(trigger, "expansion of " + trigger) == null) {
+                list[table.size() - 1] = trigger;
+            }
+        }
+        matcher = new SnippetMatcher();
+        for (Map.Entry<String, String> entry : table.entrySet()) {
+            matcher.put(entry.getKey(), entry.getValue());
+        }
+        maxTriggerLength = matcher.getMaxTriggerLength();
+
+        StringBuilder text = new StringBuilder();
+        while (text.length() < KEYSTROKES) {
+            if (random.nextInt(40) == 0) {
+                text.append(list[random.nextInt(list.length)]);
+            } else {
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            text.append(' ');
+        }
+        keystrokes = new String[KEYSTROKES];
+        for (int i = 0; i < KEYSTROKES; i++) {
+            keystrokes[i] = text.substring(i, i + 1);
+        }
+
+        extra = new String[EXTRA];
+        for (int i = 0; i < EXTRA; i++) {
+            String trigger;
+            do {
+                trigger = randomTrigger(random);
+            } while (table.containsKey(trigger));
+            extra[i] = trigger;
+        }
+        changedTable = new HashMap<String, String>(table);
+
+        // Both detectors have to agree before their timings mean anything
+        matcher.restart("");
+        recent = new StringBuilder();
+        int expansions = 0;
+        int lookups = 0;
+        for (int i = 0; i < KEYSTROKES; i++) {
+            if (automaton() != null) {
+                expansions++;
+            }
+        }
+        for (int i = 0; i < KEYSTROKES; i++) {
+            if (suffixLookup() != null) {
+                lookups++;
+            }
+        }
+        if (expansions != lookups || expansions == 0) {
+            throw new IllegalStateException("automaton found " + expansions + " triggers, lookup " + lookups);
+        }
+        matcher.restart("");
+        recent.setLength(0);
+        next = 0;
+    }
+
+    private static String randomTrigger(Random random) {
+        StringBuilder trigger = new StringBuilder(";");
+        int length = 2 + random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            trigger.append((char) ('a' + random.nextInt(26)));
+        }
+        return trigger.toString();
+    }
+
+    private String nextKeystroke() {
+        String key = keystrokes[next];
+        next = (next + 1) & (KEYSTROKES - 1);
+        return key;
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public SnippetMatcher.Snippet automaton() {
+        SnippetMatcher.Snippet snippet = matcher.feed(nextKeystroke());
+        if (snippet != null) {
+            matcher.expanded();
+        }
+        return snippet;
+    }
+
+    @Benchmark
+    @BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String suffixLookup() {
+        recent.append(nextKeystroke());
+        if (recent.length() > 2 * maxTriggerLength) {
+            recent.delete(0, recent.length() - maxTriggerLength);
+        }
+        for (int length = Math.min(maxTriggerLength, recent.length()); length > 0; length--) {
+            String expansion = table.get(recent.substring(recent.length() - length));
+            if (expansion != null) {
+                recent.setLength(0);
+                return expansion;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean putRemove() {
+        String trigger = extra[nextExtra];
+        nextExtra = (nextExtra + 1) & (EXTRA - 1);
+        matcher.put(trigger, "extra");
+        return matcher.remove(trigger);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int update() {
+        String trigger = extra[nextExtra];
+        nextExtra = (nextExtra + 1) & (EXTRA - 1);
+        // Every call adds or removes one trigger, the rest of the table is unchanged
+        if (changedTable.remove(trigger) == null) {
+            changedTable.put(trigger, "extra");
+        }
+        return matcher.update(changedTable);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public SnippetMatcher rebuild() {
+        SnippetMatcher rebuilt = new SnippetMatcher();
+        for (Map.Entry<String, String> entry : table.entrySet()) {
+            rebuilt.put(entry.getKey(), entry.getValue());
+        }
+        return rebuilt;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.scriptable.keyboard.TextMirror;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Types one word per invocation while a context-aware script (autocorrect,
+ * snippet expansion) looks at the text before the cursor after every
+ * keystroke, and counts the blocking InputConnection reads that costs.
+ *
+ * direct asks the editor every time, as getTextBeforeCursor would. mirror
+ * reads a TextMirror and only goes to the editor to seed it. The editor runs
+ * in-process and applies our edits one keystroke late, then reports back
+ * through onExtractedText/onUpdateSelection the way a TextView with a
+ * monitored extracted text request does. Every typoEvery-th word has its
+ * last key erased and retyped, and every 20th word ends with Enter, which the
+ * mirror can not predict. The number of interest is reads / words from the aux counters:
+ * on a device each read is a binder round trip into the app, which this
+ * benchmark does not pay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TextMirrorBenchmark {
+
+    private static final String[] WORDS = {
+        "the", "keyboard", "sends", "every", "word", "straight", "into", "focused",
+        "field", "while", "scripts", "read", "context", "around", "cursor", "quickly"
+    };
+    private static final int CONTEXT = 32;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Reads {
+        public long reads;
+        public long words;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            reads = 0;
+            words = 0;
+        }
+    }
+
+    /**
+     * Stand-in for the app's editor on the other side of the InputConnection.
+     */
+    static final class Editor {
+        final StringBuilder doc = new StringBuilder();
+        final ArrayList<String> pending = new ArrayList<String>();
+        TextMirror mirror;
+        int cursor;
+        long reads;
+
+        String getTextBeforeCursor(int n) {
+            reads++;
+            return doc.substring(Math.max(0, cursor - n), cursor);
+        }
+
+        void seed(TextMirror mirror) {
+            reads++;
+            this.mirror = mirror;
+            mirror.seed(doc, 0, cursor, cursor, true);
+        }
+
+        // Edits arrive asynchronously; null is a single backspace
+        void send(String text) {
+            pending.add(text);
+        }
+
+        void applyPending() {
+            for (int i = 0; i < pending.size(); i++) {
+                String text = pending.get(i);
+                if (text == null) {
+                    if (cursor > 0) {
+                        cursor--;
+                        doc.deleteCharAt(cursor);
+                        report(cursor, cursor + 1, "");
+                    }
+                } else {
+                    doc.insert(cursor, text);
+                    cursor += text.length();
+                    report(cursor - text.length(), cursor - text.length(), text);
+                }
+            }
+            pending.clear();
+        }
+
+        private void report(int from, int to, String text) {
+            if (mirror != null) {
+                mirror.onExtractedText(text, 0, from, to, cursor, cursor);
+                mirror.onUpdateSelection(cursor, cursor);
+            }
+        }
+    }
+
+    @Param({ "0", "5" })
+    public int typoEvery;
+
+    private Editor editor;
+    private TextMirror mirror;
+    private int word;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        editor = new Editor();
+        mirror = new TextMirror(1024);
+        mirror.reset(0, 0);
+        word = 0;
+    }
+
+    @Benchmark
+    public int direct(Reads counters) {
+        long before = editor.reads;
+        int seen = 0;
+        String text = nextWord();
+        for (int i = 0; i < text.length(); i++) {
+            editor.send(text.substring(i, i + 1));
+            // The script's read sees the edit only after the editor has applied it
+            editor.applyPending();
+            seen += editor.getTextBeforeCursor(CONTEXT).length();
+            if (i == text.length() - 1 && typo()) {
+                editor.send(null);
+                editor.send(text.substring(i, i + 1));
+                editor.applyPending();
+                seen += editor.getTextBeforeCursor(CONTEXT).length();
+            }
+        }
+        counters.reads += editor.reads - before;
+        counters.words++;
+        return seen;
+    }
+
+    @Benchmark
+    public int mirror(Reads counters) {
+        long before = editor.reads;
+        int seen = 0;
+        String text = nextWord();
+        for (int i = 0; i < text.length(); i++) {
+            type(text.substring(i, i + 1));
+            seen += readContext().length();
+            if (i == text.length() - 1 && typo()) {
+                mirror.deleteBefore(1);
+                editor.send(null);
+                type(text.substring(i, i + 1));
+                seen += readContext().length();
+            }
+            // The editor catches up one keystroke late
+            editor.applyPending();
+        }
+        counters.reads += editor.reads - before;
+        counters.words++;
+        return seen;
+    }
+
+    private void type(String text) {
+        if (text.equals("\n")) {
+            mirror.sendKey();
+        } else {
+            mirror.commitText(text);
+        }
+        editor.send(text);
+    }
+
+    // What KeyboardService.getTextBeforeCursor does: mirror first, seed on a miss
+    private String readContext() {
+        String text = mirror.getTextBeforeCursor(CONTEXT);
+        if (text == null) {
+            editor.applyPending();
+            editor.seed(mirror);
+            text = mirror.getTextBeforeCursor(CONTEXT);
+        }
+        return text;
+    }
+
+    private String nextWord() {
+        String text = WORDS[word % WORDS.length];
+        word++;
+        return word % 20 == 0 ? text + "\n" : text + " ";
+    }
+
+    private boolean typo() {
+        return typoEvery > 0 && word % typoEvery == 0;
+    }
+}
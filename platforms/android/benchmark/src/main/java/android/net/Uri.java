@@ -0,0 +1,65 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package android.net;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * JVM shim for the parts of android.net.Uri that AllowList reads, backed by
+ * java.net.URI. Opaque URIs such as data: have no host or path, as on Android.
+ */
+public final class Uri {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final String path;
+
+    private Uri(String scheme, String host, int port, String path) {
+        this.scheme = scheme;
+        this.host = host;
+        this.port = port;
+        this.path = path;
+    }
+
+    public static Uri parse(String uriString) {
+        try {
+            URI uri = new URI(uriString);
+            return new Uri(uri.getScheme(), uri.getHost(), uri.getPort(), uri.isOpaque() ? null : uri.getRawPath());
+        } catch (URISyntaxException e) {
+            return new Uri(null, null, -1, null);
+        }
+    }
+
+    public String getScheme() {
+        return scheme;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package android.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JVM shim for android.util.Base64 backed by java.util.Base64.
+ * Only the NO_WRAP / DEFAULT flags used by Cordova are honoured.
+ */
+public final class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_PADDING = 1;
+    public static final int NO_WRAP = 2;
+    public static final int CRLF = 4;
+    public static final int URL_SAFE = 8;
+    public static final int NO_CLOSE = 16;
+
+    private Base64() {
+    }
+
+    private static java.util.Base64.Encoder encoder(int flags) {
+        if ((flags & NO_WRAP) != 0) {
+            return java.util.Base64.getEncoder();
+        }
+        return java.util.Base64.getMimeEncoder(76, new byte[] { '\n' });
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        return encoder(flags).encodeToString(input);
+    }
+
+    public static byte[] encode(byte[] input, int flags) {
+        return encoder(flags).encode(input);
+    }
+
+    public static byte[] decode(String str, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(str.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static byte[] decode(byte[] input, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(input);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.file;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds in-progress chunked reads and their flow control windows. A read may only
+ * have a limited number of chunks sent but not yet acknowledged by JavaScript, so
+ * the bridge queue never holds more than that many chunks of one file.
+ *
+ * A read does not hold a thread while its window is full: its Sender returns, and
+ * the acknowledgement that reopens the window schedules it again on the executor.
+ * A read that is never acknowledged (say, while its page is paused) costs no thread.
+ */
+class ChunkedReads {
+
+    /**
+     * Sends the chunks of one read.
+     */
+    interface Sender {
+        /**
+         * Sends chunks, continuing where the previous call stopped, for as long as
+         * read.takeSlot() allows. Calls read.finish() after the last chunk or an error.
+         */
+        void sendChunks(Read read);
+
+        /**
+         * Tells JavaScript the read was aborted.
+         */
+        void sendAbort();
+    }
+
+    private final ConcurrentHashMap<String, Read> reads = new ConcurrentHashMap<String, Read>();
+    private final Executor executor;
+
+    ChunkedReads(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Registers a new read and runs its sender on the calling thread.
+     * @param readId    Identifier used by JavaScript to acknowledge chunks
+     * @param window    Maximum number of unacknowledged chunks
+     */
+    public void start(String readId, int window, Sender sender) {
+        Read read = new Read(readId, window, sender);
+        reads.put(readId, read);
+        read.run();
+    }
+
+    /**
+     * Acknowledges count chunks of the given read, allowing that many more to be sent.
+     * Counts beyond the chunks actually outstanding are ignored: an earlier chunk's
+     * buffer may only be reused once JavaScript really has that chunk.
+     */
+    public void ack(String readId, int count) {
+        Read read = reads.get(readId);
+        if (read != null && count > 0) {
+            read.ack(count);
+        }
+    }
+
+    /**
+     * Stops the given read after its current chunk.
+     */
+    public void abort(String readId) {
+        Read read = reads.get(readId);
+        if (read != null) {
+            read.abort();
+        }
+    }
+
+    /**
+     * Stops all reads, e.g. when the page they were started from goes away.
+     */
+    public void abortAll() {
+        for (Read read : reads.values()) {
+            read.abort();
+        }
+    }
+
+    /**
+     * A single chunked read.
+     */
+    public class Read implements Runnable {
+        private final String readId;
+        private final int window;
+        private final Sender sender;
+        // Guarded by this
+        private int outstanding;
+        private boolean running = true;
+        private boolean aborted;
+        private boolean finished;
+
+        private Read(String readId, int window, Sender sender) {
+            this.readId = readId;
+            this.window = window;
+            this.sender = sender;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        @Override
+        public void run() {
+            sender.sendChunks(this);
+            boolean abortNow;
+            synchronized (this) {
+                // Still running: this run saw the abort in takeSlot(), so it answers it
+                abortNow = aborted && running && !finished;
+            }
+            if (abortNow) {
+                sender.sendAbort();
+                finish();
+            }
+        }
+
+        /**
+         * Claims a slot in the window for the next chunk. When it returns false the
+         * sender must return without touching the read again; an acknowledgement
+         * or abort runs it anew.
+         * @return false if the window is full or the read was aborted or finished
+         */
+        public synchronized boolean takeSlot() {
+            if (aborted || finished) {
+                return false;
+            }
+            if (outstanding >= window) {
+                running = false;
+                return false;
+            }
+            outstanding++;
+            return true;
+        }
+
+        private synchronized void ack(int count) {
+            outstanding -= Math.min(count, outstanding);
+            resume();
+        }
+
+        private synchronized void abort() {
+            aborted = true;
+            resume();
+        }
+
+        private void resume() {
+            if (!running && !finished) {
+                running = true;
+                executor.execute(this);
+            }
+        }
+
+        public void finish() {
+            synchronized (this) {
+                finished = true;
+                running = false;
+            }
+            reads.remove(readId, this);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+package org.apache.cordova.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Writes string data from the bridge to a FileChannel at a given position.
+ *
+ * Base64 data is decoded, and text encoded, into a pooled direct buffer that is
+ * written out whenever it fills, so no intermediate byte[] of the full payload
+ * is ever allocated.
+ */
+class FileChannelWriter {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+
+    private static final byte[] DECODE = new byte[128];
+    private static final byte SKIP = -2;
+    private static final byte INVALID = -1;
+
+    static {
+        Arrays.fill(DECODE, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+        // Matches android.util.Base64.DEFAULT, which ignores line breaks and spaces
+        DECODE[' '] = SKIP;
+        DECODE['\t'] = SKIP;
+        DECODE['\r'] = SKIP;
+        DECODE['\n'] = SKIP;
+    }
+
+    private FileChannelWriter() {
+    }
+
+    /**
+     * Writes data at position and returns the number of bytes written.
+     *
+     * @param isBinary True if data is base64-encoded binary data. The caller must
+     *                 have validated it with checkBase64 before opening the file.
+     */
+    static long write(FileChannel channel, long position, String data, boolean isBinary) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            if (isBinary) {
+                return writeBase64(channel, position, data, buffer);
+            }
+            return writeText(channel, position, data, buffer);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Checks that data is valid base64 without decoding it.
+     *
+     * @throws IllegalArgumentException If it is not
+     */
+    static void checkBase64(String data) {
+        int sextets = 0;
+        int length = data.length();
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                // Padding ends the data; only whitespace and padding may follow
+                for (i++; i < length; i++) {
+                    c = data.charAt(i);
+                    if (c != '=' && (c >= 128 || DECODE[c] != SKIP)) {
+                        throw new IllegalArgumentException("bad base-64");
+                    }
+                }
+                break;
+            }
+            int value = c < 128 ? DECODE[c] : INVALID;
+            if (value == INVALID) {
+                throw new IllegalArgumentException("bad base-64");
+            }
+            if (value != SKIP) {
+                sextets = (sextets + 1) & 3;
+            }
+        }
+        if (sextets == 1) {
+            throw new IllegalArgumentException("bad base-64");
+        }
+    }
+
+    // data has already passed checkBase64
+    private static long writeBase64(FileChannel channel, long position, String data, ByteBuffer buffer) throws IOException {
+        long start = position;
+        int bits = 0;
+        int sextets = 0;
+        int length = data.length();
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int value = DECODE[c];
+            if (value == SKIP) {
+                continue;
+            }
+            bits = (bits << 6) | value;
+            if (++sextets == 4) {
+                if (buffer.remaining() < 3) {
+                    position += drain(channel, position, buffer);
+                }
+                buffer.put((byte) (bits >> 16));
+                buffer.put((byte) (bits >> 8));
+                buffer.put((byte) bits);
+                bits = 0;
+                sextets = 0;
+            }
+        }
+        if (sextets > 1) {
+            if (buffer.remaining() < 2) {
+                position += drain(channel, position, buffer);
+            }
+            if (sextets == 2) {
+                buffer.put((byte) (bits >> 4));
+            } else {
+                buffer.put((byte) (bits >> 10));
+                buffer.put((byte) (bits >> 2));
+            }
+        }
+        position += drain(channel, position, buffer);
+        return position - start;
+    }
+
+    private static long writeText(FileChannel channel, long position, String data, ByteBuffer buffer) throws IOException {
+        // Same replacement behaviour as String.getBytes(Charset)
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(data);
+        long start = position;
+        while (true) {
+            CoderResult result = encoder.encode(in, buffer, true);
+            if (result.isUnderflow()) {
+                break;
+            }
+            position += drain(channel, position, buffer);
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            position += drain(channel, position, buffer);
+        }
+        position += drain(channel, position, buffer);
+        return position - start;
+    }
+
+    private static int drain(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static ByteBuffer acquireBuffer() {
+        synchronized (bufferPool) {
+            ByteBuffer buffer = bufferPool.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        synchronized (bufferPool) {
+            if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+                bufferPool.push(buffer);
+            }
+        }
+    }
+}
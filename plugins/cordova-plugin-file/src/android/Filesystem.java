@@ -296,6 +296,19 @@ public abstract class Filesystem {
     abstract long writeToFileAtURL(LocalFilesystemURL inputURL, String data, int offset,
             boolean isBinary) throws NoModificationAllowedException, IOException;
 
+    /**
+     * Writes each data[i] in place at positions[i] without truncating the file, and
+     * returns the total number of bytes written. Filesystems that cannot update files
+     * in place do not override this.
+     *
+     * Invalid data is rejected before anything is written, but ranges are not written
+     * atomically: if an I/O error occurs partway, the ranges before it stay written.
+     */
+    long writeRangesToFileAtURL(LocalFilesystemURL inputURL, long[] positions, String[] data,
+            boolean[] isBinary) throws NoModificationAllowedException, IOException {
+        throw new NoModificationAllowedException("Couldn't write ranges to file given its url");
+    }
+
     abstract long truncateFileAtURL(LocalFilesystemURL inputURL, long size)
             throws IOException, NoModificationAllowedException;
 
@@ -0,0 +1,150 @@
+/*
+       Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+*/
+package org.apache.cordova.file;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the file copies of a directory copy on a small shared pool.
+ *
+ * Copying a tree of many small files (a script library, say) is dominated by the
+ * per-file open/create/close system calls rather than by the bytes moved, and those
+ * overlap well across a few threads. Directories are still created by the caller,
+ * in order, before any file is copied into them.
+ */
+public class ParallelCopy {
+    /** Fewer copies than this are run on the calling thread. */
+    public static final int MIN_PARALLEL_COPIES = 8;
+    static final int THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * One file copy.
+     */
+    public interface Copy {
+        void run() throws IOException, InvalidModificationException, NoModificationAllowedException;
+    }
+
+    private static ExecutorService executor;
+
+    private ParallelCopy() {
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "FileCopy-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Runs every copy and returns once all have finished. If one fails, the copies
+     * that have not started yet are skipped, the running ones are waited for and
+     * the first failure is rethrown.
+     */
+    public static void runAll(List<Copy> copies) throws IOException, InvalidModificationException, NoModificationAllowedException {
+        if (copies.size() < MIN_PARALLEL_COPIES) {
+            for (Copy copy : copies) {
+                copy.run();
+            }
+            return;
+        }
+        ExecutorService executor = getExecutor();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(copies.size());
+        // Set on the first failure. Copies check it instead of being cancelled:
+        // Future.cancel also "succeeds" on a running copy and leaves it writing
+        final AtomicBoolean stop = new AtomicBoolean();
+        for (final Copy copy : copies) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    if (!stop.get()) {
+                        copy.run();
+                    }
+                    return null;
+                }
+            }));
+        }
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<Void> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                } catch (InterruptedException e) {
+                    // Keep waiting: returning now would leave copies writing into the destination
+                    if (!interrupted) {
+                        interrupted = true;
+                        if (failure == null) {
+                            failure = new IOException("Interrupted while copying", e);
+                        }
+                    }
+                    stop.set(true);
+                    continue;
+                }
+                break;
+            }
+            if (failure != null) {
+                stop.set(true);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            rethrow(failure);
+        }
+    }
+
+    private static void rethrow(Throwable failure) throws IOException, InvalidModificationException, NoModificationAllowedException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof InvalidModificationException) {
+            throw (InvalidModificationException) failure;
+        } else if (failure instanceof NoModificationAllowedException) {
+            throw (NoModificationAllowedException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new IOException(failure);
+    }
+}
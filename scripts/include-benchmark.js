@@ -0,0 +1,22 @@
+// Подключает модуль platforms/android/benchmark к Gradle-сборке.
+//
+// settings.gradle генерируется заново при каждом `cordova prepare`, поэтому
+// строка include дописывается после него, а не хранится в самом файле.
+
+const fs = require('fs');
+const path = require('path');
+
+const INCLUDE = 'include ":benchmark"';
+
+module.exports = function (context) {
+    const platformRoot = path.join(context.opts.projectRoot, 'platforms', 'android');
+    const settings = path.join(platformRoot, 'settings.gradle');
+    if (!fs.existsSync(settings) || !fs.existsSync(path.join(platformRoot, 'benchmark', 'build.gradle'))) {
+        return;
+    }
+    const content = fs.readFileSync(settings, 'utf8');
+    if (content.split(/\r?\n/).indexOf(INCLUDE) !== -1) {
+        return;
+    }
+    fs.writeFileSync(settings, content.replace(/\s*$/, '\n') + INCLUDE + '\n');
+};
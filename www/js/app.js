@@ -8,15 +8,28 @@ let debugMode = false;
 
 function onDeviceReady() {
     Debug.info('=== DEVICE READY ===');
+    // Отметка в трассе запуска (CoreAndroid.getStartupTrace)
+    cordova.exec(null, null, 'CoreAndroid', 'markStartupEvent', ['deviceready']);
     updateStatus('Ready');
     
     // Минимальная инициализация
     ScriptManager.init();
-    checkPermissions();
+    KeyboardManager.init();
+    if (isImeHost()) {
+        // Страница встроена в окно клавиатуры (KeyboardWebViewHost): Activity нет,
+        // разрешения запрашивает само приложение, клавиши со скриптами показываем сразу
+        KeyboardManager.show();
+    } else {
+        checkPermissions();
+    }
     
     Debug.info('App ready');
 }
 
+function isImeHost() {
+    return location.search.indexOf('ime=1') !== -1;
+}
+
 function toggleDebug() {
     debugMode = !debugMode;
     const btn = document.getElementById('debugToggle');
@@ -2,6 +2,32 @@
 const KeyboardManager = {
     isVisible: false,
     currentLayout: 'default',
+    // Раскладка из keyboard-layout.json, её же рисует нативная клавиатура (KeyGridView)
+    layout: null,
+    
+    // Нажатия без подтверждений: native не отвечает на каждую клавишу,
+    // ошибки приходят сводкой
+    init() {
+        this.loadKeyboardLayout();
+        if (typeof KeyboardPlugin === 'undefined' || !KeyboardPlugin.setNoAck) {
+            return;
+        }
+        KeyboardPlugin.setNoAck(true, function(report) {
+            Debug.warn('Keystroke errors', report);
+            KeyboardManager.showNotification('Ошибка ввода: ' + (report && report.lastError));
+        });
+        Debug.info('Keystroke no-ack mode enabled');
+    },
+    
+    // Загрузить раскладку один раз; до загрузки используется встроенная
+    loadKeyboardLayout() {
+        fetch('keyboard-layout.json')
+            .then(response => response.json())
+            .then(layout => {
+                this.layout = layout;
+            })
+            .catch(error => Debug.warn('Keyboard layout not loaded, using built-in', error));
+    },
     
     // Показать клавиатуру
     show() {
@@ -85,6 +111,8 @@ const KeyboardManager = {
             font-size: 16px;
             min-width: 40px;
             cursor: pointer;
+            ${keyData.width ? 'flex: ' + keyData.width + ';' : ''}
+            ${keyData.color ? 'background: ' + keyData.color + ';' : ''}
             ${keyData.style || ''}
         `;
         
@@ -257,6 +285,9 @@ const KeyboardManager = {
     
     // Получить раскладку клавиатуры
     getKeyboardLayout() {
+        if (this.layout) {
+            return this.layout;
+        }
         // Базовая раскладка - можно расширять через скрипты
         return [
             ['1', '2', '3', '4', '5', '6', '7', '8', '9', '0'],